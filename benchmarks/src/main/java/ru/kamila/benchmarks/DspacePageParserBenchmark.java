@@ -0,0 +1,65 @@
+package ru.kamila.benchmarks;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kamila.models.DspaceMetadata;
+import ru.kamila.services.DspacePageParser;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scraping cost of one DSpace item page ({@code ?show=full}): building the DOM, the metadata loop over
+ * {@code meta} elements on an already parsed document, and the streaming parse that stops at {@code </head>}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DspacePageParserBenchmark {
+    private static final String ITEM_URL = "https://dspace.kpfu.ru/xmlui/handle/net/160512";
+
+    private String html;
+    private Document document;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (var in = DspacePageParserBenchmark.class.getResourceAsStream("/fixtures/dspace-item-full.html")) {
+            html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        document = Jsoup.parse(html, ITEM_URL);
+    }
+
+    @Benchmark
+    public DspaceMetadata parsePage() {
+        return DspacePageParser.parse(Jsoup.parse(html, ITEM_URL), ITEM_URL);
+    }
+
+    @Benchmark
+    public DspaceMetadata extractMetadata() {
+        return DspacePageParser.parse(document, ITEM_URL);
+    }
+
+    @Benchmark
+    public DspaceMetadata streamHead() throws IOException {
+        try (var parser = new StreamParser(Parser.htmlParser()).parse(new StringReader(html), ITEM_URL)) {
+            return DspacePageParser.parse(parser, ITEM_URL);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.kamila.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kamila.services.KnowledgeService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewriting of the user's search text into the Lucene prefix/fuzzy query sent to the full-text index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FulltextQueryBenchmark {
+
+    @Param({"графы", "графовые модели коллабораций", "  Иванов   2020 рекомендательные системы полнотекстовый поиск  "})
+    public String searchText;
+
+    @Benchmark
+    public String toFulltextQuery() {
+        return KnowledgeService.toFulltextQuery(searchText);
+    }
+}
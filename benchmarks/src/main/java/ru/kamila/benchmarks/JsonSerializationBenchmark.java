@@ -0,0 +1,69 @@
+package ru.kamila.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kamila.entities.KnowledgeEntity;
+import ru.kamila.models.KnowledgePage;
+import ru.kamila.models.PageCursor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of list responses: the legacy array form and the cursor {@link KnowledgePage}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({"12", "100"})
+    public int size;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<KnowledgeEntity> items;
+    private KnowledgePage page;
+
+    @Setup
+    public void setUp() {
+        items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(new KnowledgeEntity(UUID.randomUUID(),
+                    List.of("Иванов, Иван Петрович", "Петрова, Анна Сергеевна", "Сидоров, Алексей Викторович"),
+                    2000 + i % 25,
+                    "2541-7746",
+                    "В статье рассматриваются методы построения графовых моделей научных коллабораций. ".repeat(8),
+                    "Графовые модели научных коллабораций, часть " + i,
+                    "Article"));
+        }
+        // The cursor the listing emits after the last item of the page.
+        var last = items.get(size - 1);
+        page = new KnowledgePage(items, PageCursor.encode(last.getCreationDate(), last.getId().toString()));
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(items);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
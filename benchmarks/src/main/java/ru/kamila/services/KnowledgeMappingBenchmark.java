@@ -0,0 +1,72 @@
+package ru.kamila.services;
+
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalNode;
+import org.neo4j.driver.internal.InternalRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kamila.entities.KnowledgeEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of driver records to {@link KnowledgeEntity}, as done for every listing, search and recommendation
+ * response. Lives in the services package to reach the package-private mapping helpers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KnowledgeMappingBenchmark {
+
+    @Param({"12", "100"})
+    public int rows;
+
+    private List<Record> records;
+
+    @Setup
+    public void setUp() {
+        records = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            var node = new InternalNode(i, List.of("Knowledge"), Map.<String, Value>of(
+                    "id", Values.value(UUID.randomUUID().toString()),
+                    "creationDate", Values.value(2000 + i % 25),
+                    "issuerId", Values.value("2541-7746"),
+                    "summary", Values.value("В статье рассматриваются методы построения графовых моделей научных коллабораций. ".repeat(8)),
+                    "title", Values.value("Графовые модели научных коллабораций, часть " + i),
+                    "type", Values.value("Article"),
+                    "fileHash", Values.value("9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08"),
+                    "fileSize", Values.value(1_284_000L)));
+            var authors = Values.value(List.of("Иванов, Иван Петрович", "Петрова, Анна Сергеевна", "Сидоров, Алексей Викторович"));
+            records.add(new InternalRecord(List.of("k", "authors"), new Value[]{node.asValue(), authors}));
+        }
+    }
+
+    @Benchmark
+    public List<KnowledgeEntity> recordsToKnowledgeEntityList() {
+        return KnowledgeService.recordsToKnowledgeEntityList(records);
+    }
+
+    @Benchmark
+    public KnowledgeEntity fromNode() {
+        var record = records.get(0);
+        return KnowledgeEntity.from(record.get("k").asNode(), record.get("authors").asList(Value::asString));
+    }
+}
@@ -0,0 +1,256 @@
+package ru.kamila.loadtest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Deterministic synthetic corpus. The same seed and sizes always produce the same authors, documents and files, so
+ * runs on different machines and days load the same data.
+ * <p>
+ * Authors are drawn per document from a Zipf distribution, so a few authors have hundreds of works and most have one
+ * or two, which is what makes author listings, co-author aggregates and recommendations expensive on real data. Title
+ * and summary words follow a Zipf distribution over a fixed vocabulary as well, so search terms range from very
+ * common to rare. Documents past the corpus size are generated the same way and are served by the DSpace stub for
+ * ingestion.
+ */
+final class CorpusGenerator {
+    static final String HANDLE_PREFIX = "lt-";
+
+    private static final List<String> VOCABULARY = List.of(
+            "анализ", "модель", "система", "история", "исследование", "развитие", "метод", "language", "data",
+            "образование", "управление", "структура", "процесс", "казанский", "университет", "регион", "экономика",
+            "право", "литература", "культура", "физика", "химия", "биология", "геология", "математика", "learning",
+            "network", "algorithm", "оптимизация", "моделирование", "эксперимент", "теория", "практика", "педагогика",
+            "психология", "философия", "лингвистика", "перевод", "татарский", "русский", "язык", "текст", "корпус",
+            "граф", "поиск", "кластеризация", "спектроскопия", "нефть", "экология", "медицина", "генетика", "клетка",
+            "белок", "кристалл", "магнитный", "квантовый", "оптический", "астрономия", "климат", "почва", "вода",
+            "финансы", "рынок", "инновации", "предприятие", "социология", "политика", "журналистика", "искусство");
+    private static final List<String> SURNAMES = List.of(
+            "Иванов", "Петрова", "Сидоров", "Хабибуллина", "Гарипов", "Смирнова", "Кузнецов", "Попова", "Васильев",
+            "Зайнуллин", "Соколова", "Михайлов", "Новикова", "Фёдоров", "Морозова", "Волков", "Алексеева", "Лебедев",
+            "Семёнова", "Егоров", "Павлова", "Козлов", "Степанова", "Николаев", "Орлова", "Андреев", "Макарова",
+            "Никитин", "Захарова", "Сафин", "Галиева", "Мухаметзянов", "Шарипова", "Валеев", "Ахметова", "Нуриев");
+    private static final String INITIALS = "АБВГДЕЖЗИКЛМНОПРСТУФХЭЮЯ";
+    private static final List<String> TYPES = List.of("Статья", "Тезисы", "Монография", "Учебное пособие", "Диссертация");
+    private static final int[] AUTHOR_COUNT_WEIGHTS = {35, 30, 20, 10, 5};
+    private static final int ISSUERS = 40;
+    private static final int LATEST_YEAR = 2025;
+    private static final int EARLIEST_YEAR = 1995;
+
+    private final long seed;
+    private final int documents;
+    private final int authors;
+    private final int files;
+    private final double fileRatio;
+    private final long minFileSize;
+    private final long maxFileSize;
+    private final ZipfDistribution authorRanks;
+    private final ZipfDistribution wordRanks;
+    private final ZipfDistribution issuerRanks;
+    private final ConcurrentHashMap<Integer, byte[]> fileContents = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> fileHashes = new ConcurrentHashMap<>();
+
+    record Document(int number, String id, String handle, List<String> authors, int year, String issuerId, String type,
+                    String title, String summary, Integer file) {
+    }
+
+    CorpusGenerator(long seed, int documents, int authors, int files, double fileRatio, double authorExponent,
+                    long minFileSize, long maxFileSize) {
+        this.seed = seed;
+        this.documents = documents;
+        this.authors = authors;
+        this.files = files;
+        this.fileRatio = fileRatio;
+        this.minFileSize = minFileSize;
+        this.maxFileSize = maxFileSize;
+        this.authorRanks = new ZipfDistribution(authors, authorExponent);
+        this.wordRanks = new ZipfDistribution(VOCABULARY.size(), 1.0);
+        this.issuerRanks = new ZipfDistribution(ISSUERS, 1.0);
+    }
+
+    int documents() {
+        return documents;
+    }
+
+    int authors() {
+        return authors;
+    }
+
+    static String documentId(int number) {
+        return UUID.nameUUIDFromBytes(("knowledge-" + number).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    static String authorId(int rank) {
+        return UUID.nameUUIDFromBytes(("author-" + rank).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Unique name of the author with the given popularity rank.
+     */
+    static String authorName(int rank) {
+        var surname = SURNAMES.get(rank % SURNAMES.size());
+        var rest = rank / SURNAMES.size();
+        var name = surname + " " + INITIALS.charAt(rest % INITIALS.length()) + ". "
+                + INITIALS.charAt(rest / INITIALS.length() % INITIALS.length()) + ".";
+        var cycle = rest / (INITIALS.length() * INITIALS.length());
+        return cycle == 0 ? name : name + " " + (cycle + 1);
+    }
+
+    /**
+     * A search term, drawn like the words of titles and summaries, so common terms match many documents.
+     */
+    String searchTerm(SplittableRandom random) {
+        return VOCABULARY.get(wordRanks.sample(random));
+    }
+
+    Document document(int number) {
+        var random = new SplittableRandom(seed * 1_000_003L + number);
+        var count = weightedIndex(random, AUTHOR_COUNT_WEIGHTS) + 1;
+        var names = new LinkedHashSet<String>();
+        while (names.size() < Math.min(count, authors)) {
+            names.add(authorName(authorRanks.sample(random)));
+        }
+        var year = Math.max(EARLIEST_YEAR, LATEST_YEAR - (int) Math.abs(random.nextGaussian() * 7));
+        var issuer = issuerRanks.sample(random);
+        var issuerId = "%04d-%04d".formatted(1000 + issuer * 37, 2000 + issuer * 53);
+        var type = TYPES.get(random.nextInt(TYPES.size()));
+        var title = words(random, 4 + random.nextInt(6));
+        var summary = words(random, 30 + random.nextInt(40));
+        var file = random.nextDouble() < fileRatio ? Integer.valueOf(random.nextInt(files)) : null;
+        return new Document(number, documentId(number), "net/" + HANDLE_PREFIX + number, List.copyOf(names), year, issuerId,
+                type, title, summary, file);
+    }
+
+    /**
+     * Content of a fixture file. Sizes are spread log-uniformly between the minimum and maximum file size.
+     */
+    byte[] file(int index) {
+        return fileContents.computeIfAbsent(index, key -> {
+            var random = new SplittableRandom(seed * 7_919L + index);
+            var size = (int) Math.round(minFileSize * Math.pow((double) maxFileSize / minFileSize, random.nextDouble()));
+            return PdfFixtures.pdf("Kamila load test file " + index, size, random.nextLong());
+        });
+    }
+
+    String fileHash(int index) {
+        return fileHashes.computeIfAbsent(index, key -> HexFormat.of().formatHex(sha256().digest(file(index))));
+    }
+
+    /**
+     * Writes the corpus as a snapshot for {@code POST /api/v1/snapshot}. Authors come first, then files, then
+     * documents, so every line only references what earlier lines imported.
+     */
+    void writeSnapshot(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        try (var writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            line(writer, "{\"kind\":\"snapshot\",\"version\":1,\"createdAt\":" + quote(Instant.now().toString()) + ",\"blobs\":true}");
+            for (int rank = 0; rank < authors; rank++) {
+                line(writer, "{\"kind\":\"author\",\"id\":" + quote(authorId(rank)) + ",\"name\":" + quote(authorName(rank)) + "}");
+            }
+            var used = new LinkedHashSet<Integer>();
+            for (int number = 0; number < documents; number++) {
+                var file = document(number).file();
+                if (file != null) {
+                    used.add(file);
+                }
+            }
+            for (var index : used) {
+                line(writer, "{\"kind\":\"blob\",\"hash\":" + quote(fileHash(index)) + ",\"size\":" + file(index).length
+                        + ",\"data\":\"" + Base64.getEncoder().encodeToString(file(index)) + "\"}");
+            }
+            for (int number = 0; number < documents; number++) {
+                line(writer, knowledgeLine(document(number)));
+            }
+        }
+    }
+
+    private static void line(BufferedWriter writer, String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+    }
+
+    private String knowledgeLine(Document document) {
+        var line = new StringBuilder("{\"kind\":\"knowledge\"")
+                .append(",\"id\":").append(quote(document.id()))
+                .append(",\"handle\":").append(quote(document.handle()))
+                .append(",\"authors\":[").append(document.authors().stream().map(CorpusGenerator::quote).collect(Collectors.joining(","))).append(']')
+                .append(",\"creationDate\":").append(document.year())
+                .append(",\"issuerId\":").append(quote(document.issuerId()))
+                .append(",\"summary\":").append(quote(document.summary()))
+                .append(",\"title\":").append(quote(document.title()))
+                .append(",\"type\":").append(quote(document.type()));
+        if (document.file() != null) {
+            line.append(",\"fileHash\":").append(quote(fileHash(document.file())))
+                    .append(",\"fileSize\":").append(file(document.file()).length);
+        }
+        return line.append('}').toString();
+    }
+
+    private String words(SplittableRandom random, int count) {
+        var words = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            words.add(VOCABULARY.get(wordRanks.sample(random)));
+        }
+        var text = String.join(" ", words);
+        return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+
+    private static int weightedIndex(SplittableRandom random, int[] weights) {
+        var total = 0;
+        for (var weight : weights) {
+            total += weight;
+        }
+        var roll = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    static String quote(String value) {
+        var quoted = new StringBuilder(value.length() + 2).append('"');
+        for (var c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append("\\u%04x".formatted((int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
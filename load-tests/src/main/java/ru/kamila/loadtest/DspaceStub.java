@@ -0,0 +1,142 @@
+package ru.kamila.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stand-in for the DSpace repository, serving the XMLUI item pages and PDF bitstreams of generated documents:
+ * <ul>
+ *     <li>{@code GET /xmlui/handle/net/lt-<n>} an item page with the Dublin Core and Highwire {@code <meta>} tags the
+ *     application scrapes, followed by a body of XMLUI chrome that it should not read;</li>
+ *     <li>{@code GET} and {@code HEAD /xmlui/bitstream/handle/net/lt-<n>/document.pdf} the document's file.</li>
+ * </ul>
+ * Every response can be delayed by a fixed latency to stand in for a remote repository.
+ */
+final class DspaceStub implements AutoCloseable {
+    private static final String PAGE_PREFIX = "/xmlui/handle/net/";
+    private static final String FILE_PREFIX = "/xmlui/bitstream/handle/net/";
+    private static final String FILE_NAME = "/document.pdf";
+    private static final String BODY_FILLER = "<div class=\"ds-static-div\"><p>Электронный архив КФУ</p></div>\n".repeat(200);
+
+    private final CorpusGenerator corpus;
+    private final Duration latency;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String baseUrl;
+
+    DspaceStub(CorpusGenerator corpus, String host, int port, int threads, Duration latency) throws IOException {
+        this.corpus = corpus;
+        this.latency = latency;
+        server = HttpServer.create(new InetSocketAddress(port), 256);
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            var thread = new Thread(runnable, "dspace-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/xmlui/", this::handle);
+        server.start();
+        baseUrl = "http://" + host + ":" + server.getAddress().getPort();
+    }
+
+    String itemUrl(int number) {
+        return baseUrl + PAGE_PREFIX + CorpusGenerator.HANDLE_PREFIX + number;
+    }
+
+    private String fileUrl(int number) {
+        return baseUrl + FILE_PREFIX + CorpusGenerator.HANDLE_PREFIX + number + FILE_NAME;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!latency.isZero()) {
+                Thread.sleep(latency.toMillis());
+            }
+            var path = exchange.getRequestURI().getPath();
+            if (path.startsWith(PAGE_PREFIX)) {
+                var number = parseNumber(path.substring(PAGE_PREFIX.length()));
+                if (number < 0 || !"GET".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                var page = page(corpus.document(number)).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+                exchange.getResponseHeaders().set("ETag", "\"page-" + number + "\"");
+                exchange.sendResponseHeaders(200, page.length);
+                exchange.getResponseBody().write(page);
+            } else if (path.startsWith(FILE_PREFIX) && path.endsWith(FILE_NAME)) {
+                var number = parseNumber(path.substring(FILE_PREFIX.length(), path.length() - FILE_NAME.length()));
+                var file = number < 0 ? null : corpus.document(number).file();
+                if (file == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                var content = corpus.file(file);
+                exchange.getResponseHeaders().set("Content-Type", "application/pdf");
+                exchange.getResponseHeaders().set("ETag", "\"" + corpus.fileHash(file) + "\"");
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Content-Length", String.valueOf(content.length));
+                    exchange.sendResponseHeaders(200, -1);
+                } else {
+                    exchange.sendResponseHeaders(200, content.length);
+                    exchange.getResponseBody().write(content);
+                }
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String page(CorpusGenerator.Document document) {
+        var head = new StringBuilder()
+                .append("<!DOCTYPE html>\n<html><head>\n<meta charset=\"UTF-8\">\n")
+                .append("<title>").append(escape(document.title())).append("</title>\n")
+                .append(meta("DC.title", document.title()));
+        for (var author : document.authors()) {
+            head.append(meta("DC.creator", author));
+        }
+        head.append(meta("DCTERMS.issued", String.valueOf(document.year())))
+                .append(meta("citation_date", document.year() + "-01-01"))
+                .append(meta("citation_issn", document.issuerId()))
+                .append(meta("DCTERMS.abstract", document.summary()))
+                .append(meta("DC.type", document.type()));
+        if (document.file() != null) {
+            head.append(meta("citation_pdf_url", fileUrl(document.number())));
+        }
+        return head.append("</head>\n<body>\n").append(BODY_FILLER).append("</body></html>\n").toString();
+    }
+
+    private static String meta(String name, String content) {
+        return "<meta name=\"" + name + "\" content=\"" + escape(content) + "\">\n";
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static int parseNumber(String handle) {
+        if (!handle.startsWith(CorpusGenerator.HANDLE_PREFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(handle.substring(CorpusGenerator.HANDLE_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,407 @@
+package ru.kamila.loadtest;
+
+import org.testcontainers.containers.Neo4jContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * End-to-end load test with everything the application talks to stood in locally, so that the numbers of two runs,
+ * or of two machines, can be compared:
+ * <ol>
+ *     <li>Neo4j is started with Testcontainers (or taken from {@code loadtest.neo4jUri});</li>
+ *     <li>a {@link DspaceStub} serves item pages and PDFs for ingestion;</li>
+ *     <li>the packaged application is started against both, with its data in {@code target/loadtest};</li>
+ *     <li>a {@link CorpusGenerator} corpus of {@code loadtest.documents} documents with Zipf-distributed authors is
+ *     imported through {@code POST /api/v1/snapshot};</li>
+ *     <li>closed-loop clients run the {@code loadtest.mix} of search, list, get, recommendations, author profile,
+ *     download and ingest requests, with popular documents and authors requested more often;</li>
+ *     <li>throughput, p50 and p99 per endpoint are reported and checked against {@code thresholds.properties}, once
+ *     one has been recorded from a baseline run. A run that exceeds a threshold fails.</li>
+ * </ol>
+ * With {@code loadtest.baseUrl} the application and its database are not started; the stub must then be reachable
+ * from the application at {@code loadtest.stubHost}. System properties {@code loadtest.config.<key>} are passed to a
+ * started application as {@code -D<key>}, e.g. {@code -Dloadtest.config.kamila.api.non-blocking=true}.
+ * <pre>
+ * ./mvnw package -DskipTests
+ * cd load-tests
+ * mvn -q compile exec:java -Dloadtest.main=ru.kamila.loadtest.EndToEndLoadTest
+ * </pre>
+ */
+public final class EndToEndLoadTest {
+    private static final Path WORK_DIRECTORY = Path.of("target", "loadtest");
+
+    public static void main(String[] args) throws Exception {
+        var seed = Long.getLong("loadtest.seed", 42);
+        var corpus = new CorpusGenerator(seed,
+                Integer.getInteger("loadtest.documents", 10_000),
+                Integer.getInteger("loadtest.authors", 2_500),
+                Integer.getInteger("loadtest.files", 100),
+                Double.parseDouble(System.getProperty("loadtest.fileRatio", "0.8")),
+                Double.parseDouble(System.getProperty("loadtest.authorExponent", "0.8")),
+                Long.getLong("loadtest.minFileSize", 20_000),
+                Long.getLong("loadtest.maxFileSize", 1_000_000));
+        var concurrency = Integer.getInteger("loadtest.concurrency", 64);
+        var warmup = parseDuration(System.getProperty("loadtest.warmup", "15s"));
+        var duration = parseDuration(System.getProperty("loadtest.duration", "60s"));
+        var mix = Mix.parse(System.getProperty("loadtest.mix", "get=30,search=20,list=15,recommendations=10,author=10,download=10,ingest=5"));
+        var thresholdsPath = Path.of(System.getProperty("loadtest.thresholds", "thresholds.properties"));
+
+        deleteRecursively(WORK_DIRECTORY);
+        Files.createDirectories(WORK_DIRECTORY);
+        var resources = new ArrayDeque<AutoCloseable>();
+        List<String> violations;
+        try {
+            var stub = new DspaceStub(corpus, System.getProperty("loadtest.stubHost", "localhost"),
+                    Integer.getInteger("loadtest.stubPort", 0), Integer.getInteger("loadtest.stubThreads", 32),
+                    parseDuration(System.getProperty("loadtest.stubLatency", "20ms")));
+            resources.push(stub);
+            var baseUrl = System.getProperty("loadtest.baseUrl");
+            if (baseUrl == null) {
+                baseUrl = startApplication(resources);
+            }
+            var client = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .build();
+            if (Boolean.parseBoolean(System.getProperty("loadtest.seedCorpus", "true"))) {
+                seed(client, baseUrl, corpus);
+                var settle = parseDuration(System.getProperty("loadtest.settle", "10s"));
+                System.out.printf("Waiting %s for background indexes to catch up%n", settle);
+                Thread.sleep(settle.toMillis());
+            }
+
+            System.out.printf("Running %d clients against %s for %s (warm-up %s) with mix %s%n",
+                    concurrency, baseUrl, duration, warmup, mix);
+            var workload = new Workload(client, baseUrl, stub, corpus, mix,
+                    Double.parseDouble(System.getProperty("loadtest.popularityExponent", "0.9")));
+            var measureFrom = System.nanoTime() + warmup.toNanos();
+            var stopAt = measureFrom + duration.toNanos();
+            var workers = new ArrayList<Worker>();
+            for (int i = 0; i < concurrency; i++) {
+                var worker = new Worker(workload, new SplittableRandom(seed + i), measureFrom, stopAt);
+                worker.setName("load-client-" + i);
+                worker.setDaemon(true);
+                workers.add(worker);
+                worker.start();
+            }
+            for (var worker : workers) {
+                worker.join();
+            }
+            var stats = LoadResults.summarize(workers.stream().map(worker -> worker.results).toList(), duration);
+            LoadResults.print(stats);
+
+            if (Boolean.getBoolean("loadtest.updateThresholds")) {
+                var headroom = Double.parseDouble(System.getProperty("loadtest.headroom", "1.5"));
+                Thresholds.write(thresholdsPath, stats, headroom, "Derived from a run of %d clients for %s with mix %s, headroom %s"
+                        .formatted(concurrency, duration, mix, headroom));
+                System.out.println("Wrote thresholds to " + thresholdsPath.toAbsolutePath());
+                violations = List.of();
+            } else if (Files.exists(thresholdsPath)) {
+                violations = Thresholds.load(thresholdsPath).check(stats);
+                violations.forEach(violation -> System.out.println("THRESHOLD EXCEEDED " + violation));
+            } else {
+                System.out.println("No thresholds at " + thresholdsPath.toAbsolutePath() + ", nothing to check; record them"
+                        + " from a baseline run with -Dloadtest.updateThresholds=true");
+                violations = List.of();
+            }
+        } finally {
+            close(resources);
+        }
+        if (!violations.isEmpty()) {
+            throw new IllegalStateException(violations.size() + " load-test thresholds exceeded");
+        }
+    }
+
+    private static String startApplication(Deque<AutoCloseable> resources) throws Exception {
+        var neo4jUri = System.getProperty("loadtest.neo4jUri");
+        var neo4jUser = System.getProperty("loadtest.neo4jUser", "neo4j");
+        var neo4jPassword = System.getProperty("loadtest.neo4jPassword", "testtest");
+        if (neo4jUri == null) {
+            var neo4j = new Neo4jContainer<>(DockerImageName.parse(System.getProperty("loadtest.neo4jImage", "neo4j:5.26")))
+                    .withAdminPassword(neo4jPassword);
+            resources.push(neo4j);
+            neo4j.start();
+            neo4jUri = neo4j.getBoltUrl();
+        }
+
+        var port = freePort();
+        var data = WORK_DIRECTORY.resolve("data").toAbsolutePath();
+        var command = new ArrayList<String>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(System.getProperty("loadtest.appJvmArgs", "-Xmx1g").trim().split("\\s+")));
+        command.add("-Dquarkus.http.port=" + port);
+        command.add("-Dquarkus.neo4j.uri=" + neo4jUri);
+        command.add("-Dquarkus.neo4j.authentication.username=" + neo4jUser);
+        command.add("-Dquarkus.neo4j.authentication.password=" + neo4jPassword);
+        command.add("-Dkamila.blob-store.path=" + data.resolve("blobs"));
+        command.add("-Dkamila.preview.path=" + data.resolve("previews"));
+        for (var name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("loadtest.config.")) {
+                command.add("-D" + name.substring("loadtest.config.".length()) + "=" + System.getProperty(name));
+            }
+        }
+        command.add("-jar");
+        command.add(Path.of(System.getProperty("loadtest.app", "../target/quarkus-app/quarkus-run.jar")).toAbsolutePath().toString());
+
+        var log = WORK_DIRECTORY.resolve("app.log");
+        var process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        resources.push(() -> {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        });
+        var baseUrl = "http://localhost:" + port;
+        awaitReady(baseUrl, process, log, parseDuration(System.getProperty("loadtest.startupTimeout", "3m")));
+        return baseUrl;
+    }
+
+    private static void awaitReady(String baseUrl, Process process, Path log, Duration timeout) throws Exception {
+        var client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        var request = HttpRequest.newBuilder(URI.create(baseUrl + "/q/health/ready")).timeout(Duration.ofSeconds(5)).build();
+        var deadline = System.nanoTime() + timeout.toNanos();
+        System.out.printf("Waiting for the application at %s, log in %s%n", baseUrl, log.toAbsolutePath());
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with code " + process.exitValue() + ", see " + log.toAbsolutePath());
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet.
+            }
+            Thread.sleep(1000);
+        }
+        throw new IllegalStateException("Application did not become ready within " + timeout + ", see " + log.toAbsolutePath());
+    }
+
+    private static void seed(HttpClient client, String baseUrl, CorpusGenerator corpus) throws Exception {
+        var started = System.currentTimeMillis();
+        var snapshot = WORK_DIRECTORY.resolve("snapshot.ndjson");
+        corpus.writeSnapshot(snapshot);
+        System.out.printf("Importing %d documents by %d authors (%d MB snapshot)%n", corpus.documents(), corpus.authors(),
+                Files.size(snapshot) >> 20);
+        var request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/snapshot"))
+                .header("Content-Type", "application/x-ndjson")
+                .timeout(Duration.ofMinutes(30))
+                .POST(HttpRequest.BodyPublishers.ofFile(snapshot))
+                .build();
+        var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Snapshot import failed with " + response.statusCode() + ": " + response.body());
+        }
+        System.out.printf("Imported the corpus in %d ms%n", System.currentTimeMillis() - started);
+    }
+
+    private static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void close(Deque<AutoCloseable> resources) {
+        while (!resources.isEmpty()) {
+            try {
+                resources.pop().close();
+            } catch (Exception e) {
+                System.err.println("Cleanup failed: " + e);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (var paths = Files.walk(directory)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static Duration parseDuration(String value) {
+        var normalized = value.trim().toLowerCase();
+        if (normalized.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(normalized.substring(0, normalized.length() - 2)));
+        }
+        return Duration.parse("PT" + normalized.toUpperCase());
+    }
+
+    /**
+     * Endpoints with their relative weights, e.g. {@code get=30,search=20}.
+     */
+    private record Mix(String[] endpoints, int[] cumulative) {
+
+        static Mix parse(String value) {
+            var weights = new LinkedHashMap<String, Integer>();
+            for (var entry : value.split(",")) {
+                var parts = entry.trim().split("=");
+                var weight = Integer.parseInt(parts[1].trim());
+                if (weight > 0) {
+                    weights.put(parts[0].trim(), weight);
+                }
+            }
+            for (var endpoint : weights.keySet()) {
+                if (!Workload.ENDPOINTS.contains(endpoint)) {
+                    throw new IllegalArgumentException("Unknown endpoint in loadtest.mix: " + endpoint + ", expected one of " + Workload.ENDPOINTS);
+                }
+            }
+            if (weights.isEmpty()) {
+                throw new IllegalArgumentException("loadtest.mix has no endpoint with a positive weight");
+            }
+            var cumulative = new int[weights.size()];
+            var sum = 0;
+            var i = 0;
+            for (var weight : weights.values()) {
+                sum += weight;
+                cumulative[i++] = sum;
+            }
+            return new Mix(weights.keySet().toArray(String[]::new), cumulative);
+        }
+
+        String next(SplittableRandom random) {
+            var roll = random.nextInt(cumulative[cumulative.length - 1]);
+            for (int i = 0; i < cumulative.length; i++) {
+                if (roll < cumulative[i]) {
+                    return endpoints[i];
+                }
+            }
+            return endpoints[endpoints.length - 1];
+        }
+
+        @Override
+        public String toString() {
+            var weights = new LinkedHashMap<String, Integer>();
+            for (int i = 0; i < endpoints.length; i++) {
+                weights.put(endpoints[i], cumulative[i] - (i == 0 ? 0 : cumulative[i - 1]));
+            }
+            return weights.toString();
+        }
+    }
+
+    /**
+     * Builds and sends the requests of each endpoint. Documents and authors are picked by popularity rank, so the
+     * hot ones are served from caches as they would be in production; every ingest takes a new document of the stub.
+     */
+    private static final class Workload {
+        static final List<String> ENDPOINTS = List.of("get", "search", "list", "recommendations", "author", "download", "ingest");
+
+        private final HttpClient client;
+        private final String baseUrl;
+        private final DspaceStub stub;
+        private final CorpusGenerator corpus;
+        private final Mix mix;
+        private final ZipfDistribution documentRanks;
+        private final ZipfDistribution authorRanks;
+        private final int[] documentsWithFiles;
+        private final ZipfDistribution fileRanks;
+        private final AtomicInteger nextIngested;
+
+        Workload(HttpClient client, String baseUrl, DspaceStub stub, CorpusGenerator corpus, Mix mix, double popularityExponent) {
+            this.client = client;
+            this.baseUrl = baseUrl;
+            this.stub = stub;
+            this.corpus = corpus;
+            this.mix = mix;
+            this.documentRanks = new ZipfDistribution(corpus.documents(), popularityExponent);
+            this.authorRanks = new ZipfDistribution(corpus.authors(), popularityExponent);
+            this.documentsWithFiles = IntStream.range(0, corpus.documents()).filter(number -> corpus.document(number).file() != null).toArray();
+            this.fileRanks = documentsWithFiles.length == 0 ? null : new ZipfDistribution(documentsWithFiles.length, popularityExponent);
+            this.nextIngested = new AtomicInteger(corpus.documents());
+        }
+
+        String pick(SplittableRandom random) {
+            return mix.next(random);
+        }
+
+        /**
+         * Sends one request to an endpoint and returns whether it succeeded.
+         */
+        boolean send(String endpoint, SplittableRandom random) throws IOException, InterruptedException {
+            var request = switch (endpoint) {
+                case "get" -> get("/api/v1/knowledge/" + CorpusGenerator.documentId(documentRanks.sample(random)));
+                case "search" -> get("/api/v1/knowledge?cursor=&size=12&search="
+                        + URLEncoder.encode(corpus.searchTerm(random), StandardCharsets.UTF_8));
+                case "list" -> get("/api/v1/knowledge?cursor=&size=12");
+                case "recommendations" -> get("/api/v1/knowledge/" + CorpusGenerator.documentId(documentRanks.sample(random)) + "/recommendations");
+                case "author" -> get("/api/v1/authors/" + CorpusGenerator.authorId(authorRanks.sample(random)));
+                case "download" -> fileRanks == null ? null
+                        : get("/api/v1/knowledge/" + CorpusGenerator.documentId(documentsWithFiles[fileRanks.sample(random)]) + "/download");
+                case "ingest" -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/knowledge"))
+                        .timeout(Duration.ofSeconds(60))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"url\":" + CorpusGenerator.quote(stub.itemUrl(nextIngested.getAndIncrement())) + "}"))
+                        .build();
+                default -> throw new IllegalStateException("Unknown endpoint " + endpoint);
+            };
+            return request != null && client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 400;
+        }
+
+        private HttpRequest get(String path) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30)).build();
+        }
+    }
+
+    private static final class Worker extends Thread {
+        private final Workload workload;
+        private final SplittableRandom random;
+        private final long measureFrom;
+        private final long stopAt;
+        private final LoadResults results = new LoadResults();
+
+        private Worker(Workload workload, SplittableRandom random, long measureFrom, long stopAt) {
+            this.workload = workload;
+            this.random = random;
+            this.measureFrom = measureFrom;
+            this.stopAt = stopAt;
+        }
+
+        @Override
+        public void run() {
+            while (System.nanoTime() < stopAt) {
+                var endpoint = workload.pick(random);
+                var started = System.nanoTime();
+                boolean succeeded;
+                try {
+                    succeeded = workload.send(endpoint, random);
+                } catch (Exception e) {
+                    succeeded = false;
+                }
+                var finished = System.nanoTime();
+                if (started < measureFrom || finished > stopAt) {
+                    continue;
+                }
+                if (succeeded) {
+                    results.success(endpoint, finished - started);
+                } else {
+                    results.failure(endpoint);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package ru.kamila.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencies and errors per endpoint, recorded by one client thread and merged after the run.
+ */
+final class LoadResults {
+    static final String TOTAL = "total";
+
+    private final Map<String, LatencyRecorder> latencies = new TreeMap<>();
+    private final Map<String, Integer> errors = new TreeMap<>();
+
+    /**
+     * Throughput and latency of one endpoint over the measured interval, in milliseconds.
+     */
+    record EndpointStats(String endpoint, int requests, int errors, double throughput, double p50, double p99, double max) {
+
+        double errorRatio() {
+            var attempts = requests + errors;
+            return attempts == 0 ? 0 : (double) errors / attempts;
+        }
+    }
+
+    void success(String endpoint, long nanos) {
+        latencies.computeIfAbsent(endpoint, key -> new LatencyRecorder()).add(nanos);
+    }
+
+    void failure(String endpoint) {
+        errors.merge(endpoint, 1, Integer::sum);
+    }
+
+    void addAll(LoadResults other) {
+        other.latencies.forEach((endpoint, recorder) -> latencies.computeIfAbsent(endpoint, key -> new LatencyRecorder()).addAll(recorder));
+        other.errors.forEach((endpoint, count) -> errors.merge(endpoint, count, Integer::sum));
+    }
+
+    /**
+     * Merges the results of all clients into per-endpoint statistics, followed by a {@value TOTAL} row.
+     */
+    static List<EndpointStats> summarize(List<LoadResults> results, Duration duration) {
+        var merged = new LoadResults();
+        results.forEach(merged::addAll);
+        var endpoints = new TreeMap<String, Boolean>();
+        merged.latencies.keySet().forEach(endpoint -> endpoints.put(endpoint, true));
+        merged.errors.keySet().forEach(endpoint -> endpoints.put(endpoint, true));
+
+        var stats = new ArrayList<EndpointStats>();
+        var total = new LatencyRecorder();
+        for (var endpoint : endpoints.keySet()) {
+            var recorder = merged.latencies.getOrDefault(endpoint, new LatencyRecorder());
+            stats.add(stats(endpoint, recorder, merged.errors.getOrDefault(endpoint, 0), duration));
+            total.addAll(recorder);
+        }
+        stats.add(stats(TOTAL, total, merged.errors.values().stream().mapToInt(Integer::intValue).sum(), duration));
+        return stats;
+    }
+
+    static void print(List<EndpointStats> stats) {
+        System.out.printf("%-16s %10s %10s %10s %10s %10s %8s%n", "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        for (var row : stats) {
+            System.out.printf("%-16s %10d %10.1f %10.2f %10.2f %10.2f %8d%n", row.endpoint(), row.requests(), row.throughput(),
+                    row.p50(), row.p99(), row.max(), row.errors());
+        }
+    }
+
+    private static EndpointStats stats(String endpoint, LatencyRecorder recorder, int errors, Duration duration) {
+        var sorted = recorder.sorted();
+        return new EndpointStats(endpoint, sorted.length, errors, sorted.length / (duration.toMillis() / 1000.0),
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        var index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static final class LatencyRecorder {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        void addAll(LatencyRecorder other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        long[] sorted() {
+            var copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.kamila.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Builds small but well-formed single-page PDFs, so that downloads, text extraction and preview rendering work on
+ * fixture files as they do on real ones. The page shows one line of text; the content stream is padded with comments
+ * up to the requested size.
+ */
+final class PdfFixtures {
+    private static final String PADDING_ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789";
+    private static final int PADDING_LINE = 72;
+
+    private PdfFixtures() {
+    }
+
+    static byte[] pdf(String text, int targetSize, long seed) {
+        var content = new StringBuilder("BT /F1 18 Tf 72 770 Td (").append(escape(text)).append(") Tj ET\n");
+        // Random rather than repeated padding, so that compressing transports do not make large files cheap.
+        var random = new SplittableRandom(seed);
+        while (content.length() < targetSize) {
+            content.append('%');
+            for (int i = 0; i < PADDING_LINE; i++) {
+                content.append(PADDING_ALPHABET.charAt(random.nextInt(PADDING_ALPHABET.length())));
+            }
+            content.append('\n');
+        }
+        var stream = content.toString().getBytes(StandardCharsets.US_ASCII);
+
+        var out = new ByteArrayOutputStream(stream.length + 1024);
+        var offsets = new ArrayList<Integer>();
+        write(out, "%PDF-1.4\n");
+        offsets.add(out.size());
+        write(out, "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+        offsets.add(out.size());
+        write(out, "2 0 obj\n<< /Type /Pages /Kids [3 0 R] /Count 1 >>\nendobj\n");
+        offsets.add(out.size());
+        write(out, "3 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] "
+                + "/Resources << /Font << /F1 4 0 R >> >> /Contents 5 0 R >>\nendobj\n");
+        offsets.add(out.size());
+        write(out, "4 0 obj\n<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>\nendobj\n");
+        offsets.add(out.size());
+        write(out, "5 0 obj\n<< /Length " + stream.length + " >>\nstream\n");
+        out.writeBytes(stream);
+        write(out, "\nendstream\nendobj\n");
+
+        var xref = out.size();
+        write(out, "xref\n0 " + (offsets.size() + 1) + "\n0000000000 65535 f \n");
+        for (var offset : offsets) {
+            write(out, "%010d 00000 n \n".formatted(offset));
+        }
+        write(out, "trailer\n<< /Size " + (offsets.size() + 1) + " /Root 1 0 R >>\nstartxref\n" + xref + "\n%%EOF\n");
+        return out.toByteArray();
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("(", "\\(").replace(")", "\\)");
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        out.writeBytes(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
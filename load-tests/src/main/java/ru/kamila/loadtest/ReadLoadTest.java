@@ -0,0 +1,142 @@
+package ru.kamila.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load generator for the read endpoints of a running instance. Every client thread sends a request,
+ * waits for the response and immediately sends the next one, picking the endpoint at random from a fixed mix.
+ * Latencies are recorded per endpoint after the warm-up and reported as throughput, p50, p99 and max.
+ * <p>
+ * Compare the execution modes by running it twice against the same data, once per value of
+ * {@code kamila.api.non-blocking}:
+ * <pre>
+ * mvn -q compile exec:java -Dloadtest.baseUrl=http://localhost:8080 -Dloadtest.concurrency=512 -Dloadtest.duration=60s
+ * </pre>
+ */
+public final class ReadLoadTest {
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*\"([0-9a-f-]{36})\"");
+    private static final List<String> SEARCH_TERMS = List.of("анализ", "модель", "система", "история", "language", "data");
+
+    public static void main(String[] args) throws Exception {
+        var baseUrl = System.getProperty("loadtest.baseUrl", "http://localhost:8080");
+        var concurrency = Integer.getInteger("loadtest.concurrency", 256);
+        var warmup = parseDuration(System.getProperty("loadtest.warmup", "15s"));
+        var duration = parseDuration(System.getProperty("loadtest.duration", "60s"));
+
+        var client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        var ids = sampleIds(client, baseUrl);
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("No documents found at " + baseUrl + ", ingest some data first");
+        }
+        System.out.printf("Running %d clients against %s for %s (warm-up %s), %d sample documents%n",
+                concurrency, baseUrl, duration, warmup, ids.size());
+
+        var measureFrom = System.nanoTime() + warmup.toNanos();
+        var stopAt = measureFrom + duration.toNanos();
+        var workers = new ArrayList<Worker>();
+        for (int i = 0; i < concurrency; i++) {
+            var worker = new Worker(client, baseUrl, ids, measureFrom, stopAt);
+            worker.setName("load-client-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        for (var worker : workers) {
+            worker.join();
+        }
+        report(workers, duration);
+    }
+
+    private static List<String> sampleIds(HttpClient client, String baseUrl) throws Exception {
+        var response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/knowledge?size=200")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        var ids = new ArrayList<String>();
+        var matcher = ID.matcher(response.body());
+        while (matcher.find()) {
+            ids.add(matcher.group(1));
+        }
+        return ids;
+    }
+
+    private static void report(List<Worker> workers, Duration duration) {
+        LoadResults.print(LoadResults.summarize(workers.stream().map(worker -> worker.results).toList(), duration));
+    }
+
+    private static Duration parseDuration(String value) {
+        return Duration.parse("PT" + value.toUpperCase());
+    }
+
+    private static final class Worker extends Thread {
+        private final HttpClient client;
+        private final String baseUrl;
+        private final List<String> ids;
+        private final long measureFrom;
+        private final long stopAt;
+        private final LoadResults results = new LoadResults();
+
+        private Worker(HttpClient client, String baseUrl, List<String> ids, long measureFrom, long stopAt) {
+            this.client = client;
+            this.baseUrl = baseUrl;
+            this.ids = ids;
+            this.measureFrom = measureFrom;
+            this.stopAt = stopAt;
+        }
+
+        @Override
+        public void run() {
+            var random = ThreadLocalRandom.current();
+            while (System.nanoTime() < stopAt) {
+                var id = ids.get(random.nextInt(ids.size()));
+                var roll = random.nextInt(100);
+                String endpoint;
+                String path;
+                if (roll < 40) {
+                    endpoint = "get";
+                    path = "/api/v1/knowledge/" + id;
+                } else if (roll < 65) {
+                    endpoint = "search";
+                    path = "/api/v1/knowledge?cursor=&size=12&search="
+                            + URLEncoder.encode(SEARCH_TERMS.get(random.nextInt(SEARCH_TERMS.size())), StandardCharsets.UTF_8);
+                } else if (roll < 85) {
+                    endpoint = "list";
+                    path = "/api/v1/knowledge?cursor=&size=12";
+                } else {
+                    endpoint = "recommendations";
+                    path = "/api/v1/knowledge/" + id + "/recommendations";
+                }
+                var started = System.nanoTime();
+                var failed = false;
+                try {
+                    var request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                            .timeout(Duration.ofSeconds(30))
+                            .build();
+                    failed = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() >= 400;
+                } catch (Exception e) {
+                    failed = true;
+                }
+                var finished = System.nanoTime();
+                if (started < measureFrom || finished > stopAt) {
+                    continue;
+                }
+                if (failed) {
+                    results.failure(endpoint);
+                } else {
+                    results.success(endpoint, finished - started);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ru.kamila.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Regression limits for a load-test run, kept as properties per endpoint (or {@value LoadResults#TOTAL}):
+ * <ul>
+ *     <li>{@code <endpoint>.p50-ms} and {@code <endpoint>.p99-ms}, the highest acceptable latencies;</li>
+ *     <li>{@code <endpoint>.min-rps}, the lowest acceptable throughput;</li>
+ *     <li>{@code <endpoint>.max-error-ratio}, the highest acceptable share of failed requests.</li>
+ * </ul>
+ * Limits that are not set are not checked.
+ */
+final class Thresholds {
+    private final Properties limits;
+
+    private Thresholds(Properties limits) {
+        this.limits = limits;
+    }
+
+    static Thresholds load(Path path) throws IOException {
+        var limits = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            limits.load(reader);
+        }
+        return new Thresholds(limits);
+    }
+
+    /**
+     * Returns a description of every limit the run exceeded.
+     */
+    List<String> check(List<LoadResults.EndpointStats> stats) {
+        var violations = new ArrayList<String>();
+        for (var row : stats) {
+            var endpoint = row.endpoint();
+            atMost(violations, endpoint, "p50-ms", row.p50());
+            atMost(violations, endpoint, "p99-ms", row.p99());
+            atMost(violations, endpoint, "max-error-ratio", row.errorRatio());
+            var minRps = limit(endpoint, "min-rps");
+            if (minRps != null && row.throughput() < minRps) {
+                violations.add("%s.min-rps: %.1f < %.1f".formatted(endpoint, row.throughput(), minRps));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Writes limits derived from a run: latencies may grow and throughput may drop by the given factor.
+     */
+    static void write(Path path, List<LoadResults.EndpointStats> stats, double headroom, String comment) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("# " + comment + "\n");
+            for (var row : stats) {
+                var endpoint = row.endpoint();
+                writer.write(String.format(Locale.ROOT, "%s.p50-ms=%.1f%n", endpoint, Math.max(1, row.p50() * headroom)));
+                writer.write(String.format(Locale.ROOT, "%s.p99-ms=%.1f%n", endpoint, Math.max(1, row.p99() * headroom)));
+                writer.write(String.format(Locale.ROOT, "%s.min-rps=%.1f%n", endpoint, row.throughput() / headroom));
+                writer.write(String.format(Locale.ROOT, "%s.max-error-ratio=%.3f%n", endpoint, Math.max(0.01, row.errorRatio() * headroom)));
+            }
+        }
+    }
+
+    private void atMost(List<String> violations, String endpoint, String name, double value) {
+        var limit = limit(endpoint, name);
+        if (limit != null && value > limit) {
+            violations.add("%s.%s: %.3f > %.3f".formatted(endpoint, name, value, limit));
+        }
+    }
+
+    private Double limit(String endpoint, String name) {
+        var value = limits.getProperty(endpoint + "." + name);
+        return value == null || value.isBlank() ? null : Double.valueOf(value.trim());
+    }
+}
@@ -4,13 +4,43 @@ package ru.kamila.clients;
 import io.quarkus.rest.client.reactive.Url;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HEAD;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 
+import java.io.InputStream;
+
 @RegisterRestClient(baseUri = "https://dspace.kpfu.ru/")
 public interface KpfuClient {
 
+    /**
+     * Streams the file body. The client reads from the connection only as fast as the returned stream
+     * is consumed, so callers must close it.
+     */
     @GET
     @Consumes(MediaType.APPLICATION_OCTET_STREAM)
-    byte[] downloadFile(@Url String url);
+    InputStream downloadFile(@Url String url);
+
+    /**
+     * Fetches only the headers of a file, to compare its validators with the stored ones.
+     */
+    @HEAD
+    Response fileHead(@Url String url);
+
+    /**
+     * Sends an OAI-PMH request; {@code null} arguments are left out of the query. The response is streamed like
+     * {@link #downloadFile}, and an HTTP error, such as {@code 503} with {@code Retry-After}, is thrown as a
+     * {@link jakarta.ws.rs.WebApplicationException}.
+     */
+    @GET
+    @Produces({MediaType.TEXT_XML, MediaType.APPLICATION_XML})
+    InputStream oai(@Url String endpoint,
+                    @QueryParam("verb") String verb,
+                    @QueryParam("metadataPrefix") String metadataPrefix,
+                    @QueryParam("set") String set,
+                    @QueryParam("from") String from,
+                    @QueryParam("resumptionToken") String resumptionToken);
 }
@@ -5,8 +5,8 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import lombok.ToString;
 import org.neo4j.driver.types.Node;
+import ru.kamila.models.KnowledgeSource;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,15 +18,19 @@ import java.util.UUID;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class KnowledgeEntity {
     private UUID id;
+    private String handle;
     private List<String> authors = new ArrayList<>();
     private Integer creationDate;
     private String issuerId;
     private String summary;
     private String title;
     private String type;
-    @ToString.Exclude
     @JsonIgnore
-    private byte[] file;
+    private String fileHash;
+    @JsonIgnore
+    private Long fileSize;
+    @JsonIgnore
+    private KnowledgeSource source;
 
     public KnowledgeEntity(UUID id, List<String> authors, Integer creationDate, String issuerId, String summary, String title, String type) {
         this.id = id;
@@ -39,14 +43,18 @@ public class KnowledgeEntity {
     }
 
     public static KnowledgeEntity from(Node node, List<String> authors) {
-        return new KnowledgeEntity(
+        var knowledge = new KnowledgeEntity(
                 UUID.fromString(node.get("id").asString()),
                 authors,
-                node.get("creationDate").asInt(),
+                node.get("creationDate").isNull() ? null : node.get("creationDate").asInt(),
                 node.get("issuerId").asString(),
                 node.get("summary").asString(),
                 node.get("title").asString(),
                 node.get("type").asString()
         );
+        knowledge.setHandle(node.get("handle").asString(null));
+        knowledge.setFileHash(node.get("fileHash").asString(null));
+        knowledge.setFileSize(node.get("fileSize").isNull() ? null : node.get("fileSize").asLong());
+        return knowledge;
     }
 }
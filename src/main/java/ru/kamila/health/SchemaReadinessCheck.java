@@ -0,0 +1,24 @@
+package ru.kamila.health;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+import ru.kamila.services.IndexManager;
+
+@Readiness
+@ApplicationScoped
+public class SchemaReadinessCheck implements HealthCheck {
+
+    @Inject
+    IndexManager indexManager;
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named("Neo4j schema")
+                .status(indexManager.isReady())
+                .withData("status", indexManager.getStatus())
+                .build();
+    }
+}
@@ -0,0 +1,14 @@
+package ru.kamila.models;
+
+import java.util.Map;
+
+/**
+ * Precomputed statistics of an author.
+ *
+ * @param id    id of the author
+ * @param name  the name as stored
+ * @param works number of documents written by the author
+ * @param years number of works per creation year, newest first; works without a year are only counted in {@code works}
+ */
+public record AuthorProfile(String id, String name, int works, Map<Integer, Integer> years) {
+}
@@ -0,0 +1,14 @@
+package ru.kamila.models;
+
+public record BatchWriterStats(
+        long batches,
+        long records,
+        long failedBatches,
+        long retries,
+        long deadlockRetries,
+        long lastBatchSize,
+        long lastLatencyMillis,
+        long maxLatencyMillis,
+        double averageLatencyMillis,
+        int pending) {
+}
@@ -0,0 +1,22 @@
+package ru.kamila.models;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotBlank;
+import org.hibernate.validator.constraints.URL;
+
+import java.util.List;
+
+/**
+ * @param refresh re-check already ingested handles against the upstream instead of skipping them
+ */
+public record BulkKnowledgeRequest(
+        List<@NotBlank(message = "URL must not be blank") @URL(message = "String must be URL") String> urls,
+        @URL(message = "Collection must be URL")
+        String collectionUrl,
+        boolean refresh) {
+
+    @AssertTrue(message = "Either urls or collectionUrl must be provided")
+    public boolean isSourceProvided() {
+        return (urls != null && !urls.isEmpty()) || (collectionUrl != null && !collectionUrl.isBlank());
+    }
+}
@@ -0,0 +1,62 @@
+package ru.kamila.models;
+
+/**
+ * A single inclusive byte range resolved from an HTTP {@code Range} header against a known content length.
+ */
+public record ByteRange(long start, long end) {
+    private static final String BYTES_UNIT = "bytes=";
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    public String contentRange(long size) {
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+
+    /**
+     * Parses a {@code Range} header. Returns {@code null} when the whole representation should be sent:
+     * the header is absent, malformed, uses another unit or asks for several ranges, all of which a server
+     * is allowed to ignore.
+     *
+     * @throws UnsatisfiableRangeException when the range lies entirely outside the content
+     */
+    public static ByteRange parse(String header, long size) {
+        if (header == null || !header.startsWith(BYTES_UNIT) || header.indexOf(',') >= 0) {
+            return null;
+        }
+        var spec = header.substring(BYTES_UNIT.length()).trim();
+        var dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            var first = spec.substring(0, dash).trim();
+            var last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    return null;
+                }
+                var suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    throw new UnsatisfiableRangeException();
+                }
+                return new ByteRange(Math.max(0, size - suffix), size - 1);
+            }
+            var start = Long.parseLong(first);
+            var end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size) {
+                throw new UnsatisfiableRangeException();
+            }
+            return start <= end ? new ByteRange(start, end) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static class UnsatisfiableRangeException extends RuntimeException {
+        public UnsatisfiableRangeException() {
+            super("Requested range not satisfiable");
+        }
+    }
+}
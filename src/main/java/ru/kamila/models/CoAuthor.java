@@ -0,0 +1,11 @@
+package ru.kamila.models;
+
+/**
+ * An author who wrote at least one document together with another.
+ *
+ * @param id     id of the co-author
+ * @param name   the name as stored
+ * @param weight number of documents the two authors wrote together
+ */
+public record CoAuthor(String id, String name, int weight) {
+}
@@ -0,0 +1,26 @@
+package ru.kamila.models;
+
+import ru.kamila.entities.KnowledgeEntity;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Metadata scraped from a DSpace item page, together with the link to its bitstream if one was found.
+ */
+public record DspaceMetadata(
+        String handle,
+        List<String> authors,
+        int creationDate,
+        String issuerId,
+        String summary,
+        String title,
+        String type,
+        String fileDownloadUrl) {
+
+    public KnowledgeEntity toEntity(UUID id) {
+        var knowledge = new KnowledgeEntity(id, authors, creationDate, issuerId, summary, title, type);
+        knowledge.setHandle(handle);
+        return knowledge;
+    }
+}
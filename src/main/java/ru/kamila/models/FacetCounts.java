@@ -0,0 +1,15 @@
+package ru.kamila.models;
+
+import java.util.Map;
+
+/**
+ * Hit counts per facet value for a listing or search. The counts of each facet honour the filters on the other
+ * facets but not its own, so every listed value can be selected in addition to the current ones.
+ *
+ * @param total   documents matching the query and all filters
+ * @param years   counts per creation year, newest first
+ * @param types   counts per document type, most frequent first
+ * @param issuers counts per issuer ISSN, most frequent first
+ */
+public record FacetCounts(int total, Map<Integer, Integer> years, Map<String, Integer> types, Map<String, Integer> issuers) {
+}
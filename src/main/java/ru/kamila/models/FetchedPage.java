@@ -0,0 +1,8 @@
+package ru.kamila.models;
+
+/**
+ * Metadata scraped from a DSpace item page, together with the validators the page was served with and the SHA-256
+ * of the metadata.
+ */
+public record FetchedPage(DspaceMetadata metadata, String etag, String lastModified, String hash) {
+}
@@ -0,0 +1,15 @@
+package ru.kamila.models;
+
+import java.time.Instant;
+
+/**
+ * State of the OAI-PMH harvester.
+ *
+ * @param endpoint    the OAI-PMH base URL being harvested
+ * @param enabled     whether harvests run on the schedule
+ * @param watermark   the latest record datestamp of the last completed harvest, the {@code from} of the next one
+ * @param harvestedAt when the last harvest completed
+ * @param lastJob     the ingestion job of the latest harvest started by this instance, if any
+ */
+public record HarvestStatus(String endpoint, boolean enabled, String watermark, Instant harvestedAt, IngestionJob lastJob) {
+}
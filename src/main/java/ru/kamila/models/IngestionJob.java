@@ -0,0 +1,99 @@
+package ru.kamila.models;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of a bulk ingestion. Counters are updated by the pipeline stages as items pass through them.
+ */
+@Getter
+public class IngestionJob {
+    private static final int MAX_ERRORS = 100;
+
+    public enum Status {QUEUED, RUNNING, COMPLETED, COMPLETED_WITH_ERRORS, FAILED}
+
+    public enum Stage {FETCH, PARSE, DOWNLOAD, WRITE}
+
+    public record ItemError(String url, Stage stage, int attempt, String message, Instant at) {
+    }
+
+    private final UUID id = UUID.randomUUID();
+    private final Instant createdAt = Instant.now();
+    private volatile Instant finishedAt;
+    private volatile Status status = Status.QUEUED;
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger fetched = new AtomicInteger();
+    private final AtomicInteger parsed = new AtomicInteger();
+    private final AtomicInteger downloaded = new AtomicInteger();
+    private final AtomicInteger written = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger retrying = new AtomicInteger();
+    private volatile boolean feedingDone;
+    private final Deque<ItemError> errors = new ArrayDeque<>();
+    @Getter(AccessLevel.NONE)
+    private final CompletableFuture<IngestionJob> finished = new CompletableFuture<>();
+
+    public List<ItemError> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    public void start() {
+        status = Status.RUNNING;
+    }
+
+    public void fail(String url, String message) {
+        addError(new ItemError(url, null, 0, message, Instant.now()));
+        status = Status.FAILED;
+        finishedAt = Instant.now();
+        finished.complete(this);
+    }
+
+    public void addError(ItemError error) {
+        synchronized (errors) {
+            if (errors.size() == MAX_ERRORS) {
+                errors.removeFirst();
+            }
+            errors.addLast(error);
+        }
+    }
+
+    public void feedingDone() {
+        feedingDone = true;
+        completeIfDone();
+    }
+
+    /**
+     * Marks the job finished once every submitted item has been written, found unchanged or given up on.
+     */
+    public synchronized void completeIfDone() {
+        if (finishedAt == null && feedingDone && written.get() + unchanged.get() + failed.get() >= total.get()) {
+            status = failed.get() == 0 ? Status.COMPLETED : Status.COMPLETED_WITH_ERRORS;
+            finishedAt = Instant.now();
+            finished.complete(this);
+        }
+    }
+
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    /**
+     * Completes once the job has finished, whatever its outcome.
+     */
+    public CompletionStage<IngestionJob> whenFinished() {
+        return finished;
+    }
+}
@@ -0,0 +1,21 @@
+package ru.kamila.models;
+
+import java.util.List;
+
+/**
+ * Facet filters of a listing or search. Values within one facet are alternatives, facets are combined; an empty
+ * list leaves its facet unrestricted.
+ */
+public record KnowledgeFilter(List<Integer> years, List<String> types, List<String> issuers) {
+    public static final KnowledgeFilter NONE = new KnowledgeFilter(List.of(), List.of(), List.of());
+
+    public KnowledgeFilter {
+        years = years == null ? List.of() : List.copyOf(years);
+        types = types == null ? List.of() : List.copyOf(types);
+        issuers = issuers == null ? List.of() : List.copyOf(issuers);
+    }
+
+    public boolean isEmpty() {
+        return years.isEmpty() && types.isEmpty() && issuers.isEmpty();
+    }
+}
@@ -0,0 +1,18 @@
+package ru.kamila.models;
+
+import ru.kamila.entities.KnowledgeEntity;
+
+/**
+ * Outcome of ingesting a single DSpace item.
+ */
+public record KnowledgeIngestResult(KnowledgeEntity knowledge, Outcome outcome) {
+
+    public enum Outcome {
+        /** The handle was not known before. */
+        CREATED,
+        /** The handle was known and the document was re-scraped. */
+        UPDATED,
+        /** The handle was known and nothing was fetched or written. */
+        UNCHANGED
+    }
+}
@@ -0,0 +1,11 @@
+package ru.kamila.models;
+
+import ru.kamila.entities.KnowledgeEntity;
+
+import java.util.List;
+
+/**
+ * A page of results for cursor-based pagination. {@code nextCursor} is {@code null} on the last page.
+ */
+public record KnowledgePage(List<KnowledgeEntity> items, String nextCursor) {
+}
@@ -3,8 +3,12 @@ package ru.kamila.models;
 import jakarta.validation.constraints.NotBlank;
 import org.hibernate.validator.constraints.URL;
 
+/**
+ * @param refresh re-check an already ingested handle against the upstream instead of returning it as is
+ */
 public record KnowledgeRequest(
         @NotBlank(message = "URL must not be blank")
         @URL(message = "String must be URL")
-        String url) {
+        String url,
+        boolean refresh) {
 }
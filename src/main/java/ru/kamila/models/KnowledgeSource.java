@@ -0,0 +1,47 @@
+package ru.kamila.models;
+
+import org.neo4j.driver.types.Node;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HTTP validators and content hash of the DSpace page and bitstream a document was last ingested from. A refresh
+ * compares them with the upstream to skip the page fetch and the file download when nothing has changed.
+ */
+public record KnowledgeSource(
+        String pageEtag,
+        String pageLastModified,
+        String pageHash,
+        String fileUrl,
+        String fileEtag,
+        String fileLastModified) {
+
+    public static KnowledgeSource from(Node node) {
+        return new KnowledgeSource(
+                node.get("pageEtag").asString(null),
+                node.get("pageLastModified").asString(null),
+                node.get("pageHash").asString(null),
+                node.get("fileUrl").asString(null),
+                node.get("fileEtag").asString(null),
+                node.get("fileLastModified").asString(null));
+    }
+
+    public KnowledgeSource withFile(String fileUrl, String fileEtag, String fileLastModified) {
+        return new KnowledgeSource(pageEtag, pageLastModified, pageHash, fileUrl, fileEtag, fileLastModified);
+    }
+
+    /**
+     * Node properties to set; {@code null} values remove stale validators.
+     */
+    public Map<String, Object> toProperties() {
+        var properties = new HashMap<String, Object>();
+        properties.put("pageEtag", pageEtag);
+        properties.put("pageLastModified", pageLastModified);
+        properties.put("pageHash", pageHash);
+        properties.put("fileUrl", fileUrl);
+        properties.put("fileEtag", fileEtag);
+        properties.put("fileLastModified", fileLastModified);
+        return properties;
+    }
+}
@@ -0,0 +1,15 @@
+package ru.kamila.models;
+
+import ru.kamila.entities.KnowledgeEntity;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fired after a batch of knowledge records has been committed to the graph.
+ *
+ * @param knowledges the records as written
+ * @param authorIds  ids of every author linked to one of the records, or unlinked from one by this write
+ */
+public record KnowledgeWrittenEvent(List<KnowledgeEntity> knowledges, Set<String> authorIds) {
+}
@@ -0,0 +1,9 @@
+package ru.kamila.models;
+
+/**
+ * An {@code author} line of a corpus snapshot. Authors come before the documents that reference them, so their ids
+ * survive the import.
+ */
+public record SnapshotAuthor(String kind, String id, String name) {
+    public static final String KIND = "author";
+}
@@ -0,0 +1,14 @@
+package ru.kamila.models;
+
+import java.time.Instant;
+
+/**
+ * First line of a corpus snapshot.
+ *
+ * @param version format version; an import rejects versions it does not know
+ * @param blobs   whether {@code blob} lines with the document files follow the authors
+ */
+public record SnapshotHeader(String kind, int version, Instant createdAt, boolean blobs) {
+    public static final String KIND = "snapshot";
+    public static final int VERSION = 1;
+}
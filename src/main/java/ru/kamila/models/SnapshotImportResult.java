@@ -0,0 +1,8 @@
+package ru.kamila.models;
+
+/**
+ * Counts of what a snapshot import wrote. Blobs already present in the store, or all blobs when the import was asked
+ * to leave them out, are counted as skipped.
+ */
+public record SnapshotImportResult(long authors, long knowledges, long blobs, long skippedBlobs, long millis) {
+}
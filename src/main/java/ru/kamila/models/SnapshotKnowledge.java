@@ -0,0 +1,51 @@
+package ru.kamila.models;
+
+import ru.kamila.entities.KnowledgeEntity;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A {@code knowledge} line of a corpus snapshot: everything the batch writer stores for a document, including the
+ * file reference and source validators that the API representation hides.
+ */
+public record SnapshotKnowledge(
+        String kind,
+        UUID id,
+        String handle,
+        List<String> authors,
+        Integer creationDate,
+        String issuerId,
+        String summary,
+        String title,
+        String type,
+        String fileHash,
+        Long fileSize,
+        KnowledgeSource source) {
+
+    public static final String KIND = "knowledge";
+
+    public static SnapshotKnowledge from(KnowledgeEntity knowledge) {
+        return new SnapshotKnowledge(KIND, knowledge.getId(), knowledge.getHandle(), knowledge.getAuthors(),
+                knowledge.getCreationDate(), knowledge.getIssuerId(), knowledge.getSummary(), knowledge.getTitle(),
+                knowledge.getType(), knowledge.getFileHash(), knowledge.getFileSize(), knowledge.getSource());
+    }
+
+    /**
+     * A missing creation date is stored as {@code 0}, like an item page without one, so that the document is listed.
+     *
+     * @throws IllegalArgumentException when the line has no id; documents without a handle are keyed by it
+     */
+    public KnowledgeEntity toEntity() {
+        if (id == null) {
+            throw new IllegalArgumentException("Snapshot document " + handle + " has no id");
+        }
+        var knowledge = new KnowledgeEntity(id, authors == null ? List.of() : authors,
+                creationDate == null ? 0 : creationDate, issuerId, summary, title, type);
+        knowledge.setHandle(handle);
+        knowledge.setFileHash(fileHash);
+        knowledge.setFileSize(fileSize);
+        knowledge.setSource(source);
+        return knowledge;
+    }
+}
@@ -0,0 +1,17 @@
+package ru.kamila.models;
+
+/**
+ * One typeahead suggestion.
+ *
+ * @param kind   whether the suggestion is a document title or an author name
+ * @param id     id of the document or the author
+ * @param text   the title or name as stored
+ * @param weight rank of the suggestion: the number of works for an author, {@code 1} for a title
+ */
+public record Suggestion(Kind kind, String id, String text, int weight) {
+
+    public enum Kind {
+        TITLE,
+        AUTHOR
+    }
+}
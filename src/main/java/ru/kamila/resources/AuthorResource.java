@@ -0,0 +1,61 @@
+package ru.kamila.resources;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import lombok.extern.slf4j.Slf4j;
+import ru.kamila.services.AuthorStats;
+
+@Path("/api/v1/authors")
+@Slf4j
+public class AuthorResource {
+
+    @Inject
+    AuthorStats authorStats;
+
+    /**
+     * Number of works and works per year of an author, read from precomputed aggregates.
+     */
+    @GET
+    @Path("/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getAuthor(@PathParam("id") String id) {
+        try {
+            var profile = authorStats.getProfile(id);
+            return profile == null
+                    ? Response.status(Response.Status.NOT_FOUND).build()
+                    : Response.ok(profile).build();
+        } catch (Exception e) {
+            log.error("Error getting author {}", id, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+
+    /**
+     * Authors who wrote with the given one, weighted by the number of shared works.
+     */
+    @GET
+    @Path("/{id}/coauthors")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getCoAuthors(@PathParam("id") String id, @QueryParam("limit") @DefaultValue("10") int limit) {
+        try {
+            var coAuthors = authorStats.getCoAuthors(id, limit);
+            return coAuthors == null
+                    ? Response.status(Response.Status.NOT_FOUND).build()
+                    : Response.ok(coAuthors).build();
+        } catch (Exception e) {
+            log.error("Error getting co-authors of author {}", id, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ru.kamila.resources;
+
+import jakarta.inject.Inject;
+import jakarta.validation.Valid;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriBuilder;
+import lombok.extern.slf4j.Slf4j;
+import ru.kamila.models.BulkKnowledgeRequest;
+import ru.kamila.services.IngestionPipeline;
+import ru.kamila.services.KnowledgeBatchWriter;
+import ru.kamila.services.OaiHarvester;
+
+import java.util.UUID;
+
+@Path("/api/v1/ingestion")
+@Slf4j
+public class IngestionResource {
+
+    @Inject
+    IngestionPipeline ingestionPipeline;
+
+    @Inject
+    KnowledgeBatchWriter batchWriter;
+
+    @Inject
+    OaiHarvester harvester;
+
+    @POST
+    @Path("/jobs")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response createJob(@Valid BulkKnowledgeRequest request) {
+        try {
+            var job = ingestionPipeline.submit(request);
+            var location = UriBuilder.fromResource(IngestionResource.class).path("jobs").path(job.getId().toString()).build();
+            return Response.accepted(job).location(location).build();
+        } catch (Exception e) {
+            log.error("Error submitting ingestion job", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+
+    @GET
+    @Path("/jobs")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response listJobs() {
+        return Response.ok(ingestionPipeline.getJobs()).build();
+    }
+
+    @GET
+    @Path("/jobs/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getJob(@PathParam("id") UUID id) {
+        return ingestionPipeline.getJob(id)
+                .map(job -> Response.ok(job).build())
+                .orElseGet(() -> Response.status(Response.Status.NOT_FOUND).build());
+    }
+
+    @POST
+    @Path("/harvest")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response startHarvest() {
+        try {
+            var job = harvester.harvest();
+            var location = UriBuilder.fromResource(IngestionResource.class).path("jobs").path(job.getId().toString()).build();
+            return Response.accepted(job).location(location).build();
+        } catch (Exception e) {
+            log.error("Error starting harvest", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+
+    @GET
+    @Path("/harvest")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getHarvestStatus() {
+        try {
+            return Response.ok(harvester.getStatus()).build();
+        } catch (Exception e) {
+            log.error("Error reading harvest status", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+
+    @GET
+    @Path("/batch-writer")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getBatchWriterStats() {
+        return Response.ok(batchWriter.getStats()).build();
+    }
+}
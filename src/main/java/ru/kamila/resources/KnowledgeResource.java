@@ -1,40 +1,111 @@
 package ru.kamila.resources;
 
+import io.smallrye.common.annotation.NonBlocking;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import lombok.extern.slf4j.Slf4j;
-import ru.kamila.entities.KnowledgeEntity;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.faulttolerance.exceptions.FaultToleranceException;
+import org.jboss.resteasy.reactive.PathPart;
+import ru.kamila.models.ByteRange;
+import ru.kamila.models.KnowledgeFilter;
+import ru.kamila.models.KnowledgeIngestResult;
 import ru.kamila.models.KnowledgeRequest;
+import ru.kamila.services.BlobStore;
+import ru.kamila.services.DspaceGateway;
+import ru.kamila.services.Instrumentation;
 import ru.kamila.services.KnowledgeService;
+import ru.kamila.services.PreviewRenderer;
+import ru.kamila.services.PreviewStore;
+import ru.kamila.services.ReactiveKnowledgeService;
+import ru.kamila.services.SuggestIndex;
 
 import java.util.List;
-import java.util.UUID;
+import java.util.function.Supplier;
 
 @Path("/api/v1/knowledge")
 @Slf4j
 public class KnowledgeResource {
+    private static final String PDF_MEDIA_TYPE = "application/pdf";
+    private static final String RANGE = "Range";
+    private static final String IF_RANGE = "If-Range";
+    private static final String ACCEPT_RANGES = "Accept-Ranges";
+    private static final String CONTENT_RANGE = "Content-Range";
+    private static final int PREVIEW_RETRY_AFTER_SECONDS = 5;
+    private static final int UPSTREAM_RETRY_AFTER_SECONDS = 30;
 
     @Inject
     KnowledgeService knowledgeService;
 
+    @Inject
+    BlobStore blobStore;
+
+    @Inject
+    ReactiveKnowledgeService reactiveKnowledgeService;
+
+    @Inject
+    Instrumentation instrumentation;
+
+    @Inject
+    SuggestIndex suggestIndex;
+
+    @Inject
+    PreviewRenderer previewRenderer;
+
+    @Inject
+    PreviewStore previewStore;
+
+    @ConfigProperty(name = "kamila.download.max-age", defaultValue = "3600")
+    int downloadMaxAge;
+
+    @ConfigProperty(name = "kamila.preview.max-age", defaultValue = "604800")
+    int previewMaxAge;
+
+    @ConfigProperty(name = "kamila.api.non-blocking", defaultValue = "false")
+    boolean nonBlockingReads;
+
     @POST
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
     public Response createKnowledge(@Valid KnowledgeRequest knowledgeRequest) {
         log.info("Received request to create knowledge for URL: {}", knowledgeRequest.url());
         try {
-            var created = knowledgeService.createKnowledge(knowledgeRequest);
-            return Response.status(Response.Status.CREATED).entity(created).build();
+            var result = knowledgeService.createKnowledge(knowledgeRequest);
+            var status = result.outcome() == KnowledgeIngestResult.Outcome.CREATED ? Response.Status.CREATED : Response.Status.OK;
+            return Response.status(status).entity(result.knowledge()).build();
+        } catch (FaultToleranceException e) {
+            // The repository is slow or failing, or enough requests are already waiting on it.
+            log.warn("Upstream unavailable for {}: {}", knowledgeRequest.url(), e.toString());
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, UPSTREAM_RETRY_AFTER_SECONDS)
+                    .entity("{\"error\": \"" + e.getClass().getSimpleName() + "\"}")
+                    .build();
+        } catch (DspaceGateway.ClientErrorException e) {
+            return Response.status(Response.Status.BAD_GATEWAY)
+                    .entity("{\"error\": \"" + e.getMessage() + " " + e.getStatusCode() + "\"}")
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
         } catch (Exception e) {
             log.error("Error creating knowledge", e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -45,16 +116,48 @@ public class KnowledgeResource {
 
     @GET
     @Path("/{id}/download")
-    @Produces(MediaType.APPLICATION_OCTET_STREAM)
-    public Response downloadKnowledgeFile(@PathParam("id") String id) {
+    @Produces({PDF_MEDIA_TYPE, MediaType.APPLICATION_OCTET_STREAM})
+    public Response downloadKnowledgeFile(
+            @PathParam("id") String id,
+            @HeaderParam(RANGE) String range,
+            @HeaderParam(IF_RANGE) String ifRange,
+            @QueryParam("inline") @DefaultValue("false") boolean inline,
+            @Context Request request) {
         try {
-            var file = knowledgeService.getKnowledgeFile(id);
-            if (file == null) {
+            var blob = knowledgeService.getKnowledgeFile(id);
+            if (blob == null) {
                 return Response.status(Response.Status.NOT_FOUND).build();
             }
-            var randomUuid = UUID.randomUUID().toString();
-            return Response.ok(file)
-                    .header("Content-Disposition", "attachment; filename=\"" + randomUuid + ".pdf\"")
+            var etag = new EntityTag(blob.hash());
+            var cacheControl = new CacheControl();
+            cacheControl.setMaxAge(downloadMaxAge);
+            var notModified = request.evaluatePreconditions(etag);
+            if (notModified != null) {
+                return notModified.tag(etag).cacheControl(cacheControl).build();
+            }
+
+            var path = blobStore.path(blob.hash());
+            var size = blob.size();
+            ByteRange byteRange;
+            try {
+                byteRange = ifRange == null || ifRange.equals("\"" + blob.hash() + "\"") ? ByteRange.parse(range, size) : null;
+            } catch (ByteRange.UnsatisfiableRangeException e) {
+                return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(CONTENT_RANGE, "bytes */" + size)
+                        .build();
+            }
+            instrumentation.bytesServed(byteRange == null ? size : byteRange.length());
+            var builder = byteRange == null
+                    ? Response.ok(path)
+                    : Response.status(Response.Status.PARTIAL_CONTENT)
+                    .entity(new PathPart(path, byteRange.start(), byteRange.length()))
+                    .header(CONTENT_RANGE, byteRange.contentRange(size));
+            return builder
+                    .type(PDF_MEDIA_TYPE)
+                    .tag(etag)
+                    .cacheControl(cacheControl)
+                    .header(ACCEPT_RANGES, "bytes")
+                    .header(HttpHeaders.CONTENT_DISPOSITION, (inline ? "inline" : "attachment") + "; filename=\"" + id + ".pdf\"")
                     .build();
         } catch (Exception e) {
             log.error("Error downloading file for knowledge id {}", id, e);
@@ -65,80 +168,208 @@ public class KnowledgeResource {
     }
 
     @GET
-    @Path("/{id}")
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response getKnowledge(@PathParam("id") String id) {
+    @Path("/{id}/preview")
+    @Produces("image/png")
+    public Response getKnowledgePreview(@PathParam("id") String id, @Context Request request) {
+        return preview(id, request, false);
+    }
+
+    @GET
+    @Path("/{id}/preview/snippet")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getKnowledgeSnippet(@PathParam("id") String id, @Context Request request) {
+        return preview(id, request, true);
+    }
+
+    /**
+     * Serves a cached preview. A preview only depends on the file, so it is tagged with the file hash and may be
+     * cached for {@code kamila.preview.max-age}; one that is still being rendered is answered with
+     * {@code 503 Service Unavailable} and {@code Retry-After}.
+     */
+    private Response preview(String id, Request request, boolean snippet) {
         try {
-            var knowledge = knowledgeService.getKnowledge(id);
-            if (knowledge == null) {
+            var blob = knowledgeService.getKnowledgeFile(id);
+            if (blob == null) {
                 return Response.status(Response.Status.NOT_FOUND).build();
             }
-            return Response.ok(knowledge).build();
+            var etag = new EntityTag((snippet ? "snippet-" : "preview-") + blob.hash());
+            var cacheControl = new CacheControl();
+            cacheControl.setMaxAge(previewMaxAge);
+            var notModified = request.evaluatePreconditions(etag);
+            if (notModified != null) {
+                return notModified.tag(etag).cacheControl(cacheControl).build();
+            }
+            var status = previewRenderer.request(blob.hash());
+            if (status == PreviewRenderer.Status.READY) {
+                var content = snippet ? previewStore.readSnippet(blob.hash()) : previewStore.readImage(blob.hash());
+                if (content != null) {
+                    return Response.ok(content)
+                            .type(snippet ? MediaType.TEXT_PLAIN + ";charset=UTF-8" : "image/png")
+                            .tag(etag)
+                            .cacheControl(cacheControl)
+                            .build();
+                }
+                // Evicted since it was found; this queues it again.
+                status = previewRenderer.request(blob.hash());
+            }
+            return status == PreviewRenderer.Status.UNAVAILABLE
+                    ? Response.status(Response.Status.NOT_FOUND).build()
+                    : Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, PREVIEW_RETRY_AFTER_SECONDS)
+                            .build();
         } catch (Exception e) {
-            log.error("Error getting knowledge with id {}", id, e);
+            log.error("Error serving preview for knowledge id {}", id, e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}")
                     .build();
         }
     }
 
+    /**
+     * Typeahead for the search box. Answered from memory, so it runs on the event loop.
+     */
+    @GET
+    @Path("/suggest")
+    @Produces(MediaType.APPLICATION_JSON)
+    @NonBlocking
+    public Response suggest(@QueryParam("q") String query, @QueryParam("limit") @DefaultValue("10") int limit) {
+        if (query == null || query.isBlank()) {
+            return Response.ok(List.of()).build();
+        }
+        return Response.ok(suggestIndex.suggest(query, limit)).build();
+    }
+
     @GET
+    @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response listKnowledges(
+    public Uni<Response> getKnowledge(@PathParam("id") String id) {
+        return read(() -> knowledgeService.getKnowledge(id), () -> reactiveKnowledgeService.getKnowledge(id))
+                .map(knowledge -> knowledge == null
+                        ? Response.status(Response.Status.NOT_FOUND).build()
+                        : Response.ok(knowledge).build())
+                .onFailure().recoverWithItem(e -> {
+                    log.error("Error getting knowledge with id {}", id, e);
+                    return serverError(e);
+                });
+    }
+
+    /**
+     * Lists or searches documents. With {@code cursor} (empty for the first page) the response is a
+     * {@link ru.kamila.models.KnowledgePage} whose {@code nextCursor} continues the listing at constant cost;
+     * without it the legacy {@code page}/{@code size} offset mode returns a plain array. Repeated {@code year},
+     * {@code type} and {@code issuer} parameters restrict the results to the given facet values.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> listKnowledges(
             @QueryParam("search") String search,
+            @QueryParam("cursor") String cursor,
             @QueryParam("page") @DefaultValue("0") int page,
-            @QueryParam("size") @DefaultValue("10") int size) {
-        try {
-            List<KnowledgeEntity> results;
-            if (search != null && !search.isBlank()) {
-                log.info("Searching for knowledges with query: {}", search);
-                results = knowledgeService.searchKnowledges(search, page, size);
-            } else {
-                log.info("Fetching all knowledges");
-                results = knowledgeService.getAllKnowledges(page, size);
-            }
-            return Response.ok(results).build();
-        } catch (Exception e) {
-            log.error("Error listing knowledges", e);
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
-                    .build();
+            @QueryParam("size") @DefaultValue("10") int size,
+            @QueryParam("year") List<Integer> years,
+            @QueryParam("type") List<String> types,
+            @QueryParam("issuer") List<String> issuers) {
+        var filter = new KnowledgeFilter(years, types, issuers);
+        Uni<?> results;
+        if (search != null && !search.isBlank()) {
+            log.info("Searching for knowledges with query: {}", search);
+            results = cursor != null
+                    ? read(() -> knowledgeService.searchKnowledges(search, filter, cursor, size), () -> reactiveKnowledgeService.searchKnowledges(search, filter, cursor, size))
+                    : read(() -> knowledgeService.searchKnowledges(search, filter, page, size), () -> reactiveKnowledgeService.searchKnowledges(search, filter, page, size));
+        } else {
+            log.info("Fetching all knowledges");
+            results = cursor != null
+                    ? read(() -> knowledgeService.getAllKnowledges(filter, cursor, size), () -> reactiveKnowledgeService.getAllKnowledges(filter, cursor, size))
+                    : read(() -> knowledgeService.getAllKnowledges(filter, page, size), () -> reactiveKnowledgeService.getAllKnowledges(filter, page, size));
         }
+        return results
+                .map(items -> Response.ok(items).build())
+                .onFailure(IllegalArgumentException.class).recoverWithItem(KnowledgeResource::badRequest)
+                .onFailure().recoverWithItem(e -> {
+                    log.error("Error listing knowledges", e);
+                    return serverError(e);
+                });
+    }
+
+    /**
+     * Hit counts per year, type and issuer for the same parameters as the listing.
+     */
+    @GET
+    @Path("/facets")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> getFacets(
+            @QueryParam("search") String search,
+            @QueryParam("year") List<Integer> years,
+            @QueryParam("type") List<String> types,
+            @QueryParam("issuer") List<String> issuers) {
+        var filter = new KnowledgeFilter(years, types, issuers);
+        return read(() -> knowledgeService.getFacets(search, filter), () -> reactiveKnowledgeService.getFacets(search, filter))
+                .map(facets -> facets == null
+                        ? Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("{\"error\": \"Facet index is being built\"}").build()
+                        : Response.ok(facets).build())
+                .onFailure().recoverWithItem(e -> {
+                    log.error("Error counting facets", e);
+                    return serverError(e);
+                });
     }
 
     @GET
     @Path("/author/{authorId}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getKnowledgesByAuthor(
+    public Uni<Response> getKnowledgesByAuthor(
             @PathParam("authorId") String authorId,
+            @QueryParam("cursor") String cursor,
             @QueryParam("page") @DefaultValue("0") int page,
             @QueryParam("size") @DefaultValue("10") int size) {
-        try {
-            var results = knowledgeService.getKnowledgesByAuthor(authorId, page, size);
-            return Response.ok(results).build();
-        } catch (Exception e) {
-            log.error("Error getting knowledges for author {}", authorId, e);
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
-                    .build();
-        }
+        Uni<?> results = cursor != null
+                ? read(() -> knowledgeService.getKnowledgesByAuthor(authorId, cursor, size), () -> reactiveKnowledgeService.getKnowledgesByAuthor(authorId, cursor, size))
+                : read(() -> knowledgeService.getKnowledgesByAuthor(authorId, page, size), () -> reactiveKnowledgeService.getKnowledgesByAuthor(authorId, page, size));
+        return results
+                .map(items -> Response.ok(items).build())
+                .onFailure(IllegalArgumentException.class).recoverWithItem(KnowledgeResource::badRequest)
+                .onFailure().recoverWithItem(e -> {
+                    log.error("Error getting knowledges for author {}", authorId, e);
+                    return serverError(e);
+                });
     }
 
     @GET
     @Path("/{id}/recommendations")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getRecommendations(
+    public Uni<Response> getRecommendations(
             @PathParam("id") String knowledgeId,
             @QueryParam("limit") @DefaultValue("5") int limit
     ) {
-        try {
-            var recommendations = knowledgeService.getAuthorBasedRecommendations(knowledgeId, limit);
-            return Response.ok(recommendations).build();
-        } catch (Exception e) {
-            log.error("Error getting recommendations for knowledge {}", knowledgeId, e);
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
-                    .build();
+        return read(() -> knowledgeService.getAuthorBasedRecommendations(knowledgeId, limit),
+                () -> reactiveKnowledgeService.getAuthorBasedRecommendations(knowledgeId, limit))
+                .map(recommendations -> Response.ok(recommendations).build())
+                .onFailure().recoverWithItem(e -> {
+                    log.error("Error getting recommendations for knowledge {}", knowledgeId, e);
+                    return serverError(e);
+                });
+    }
+
+    /**
+     * Runs a read either through the async driver, which the calling event-loop thread only starts and whose result
+     * arrives on the driver's own I/O threads, or, in the default mode, as a blocking call on the worker pool, exactly
+     * like a plain blocking endpoint.
+     */
+    private <T> Uni<T> read(Supplier<T> blocking, Supplier<Uni<T>> nonBlocking) {
+        if (nonBlockingReads) {
+            return Uni.createFrom().deferred(nonBlocking::get);
         }
+        return Uni.createFrom().item(blocking).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    private static Response serverError(Throwable e) {
+        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                .build();
+    }
+
+    private static Response badRequest(Throwable e) {
+        return Response.status(Response.Status.BAD_REQUEST)
+                .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                .build();
     }
 }
@@ -0,0 +1,52 @@
+package ru.kamila.resources;
+
+import io.quarkus.runtime.configuration.MemorySize;
+import io.quarkus.vertx.http.runtime.RouteConstants;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Request body limits per route. {@code quarkus.http.limits.max-body-size} only has a global value, and it is set to
+ * {@code kamila.snapshot.max-upload-size} so that a snapshot of the whole corpus can be imported in one upload. Every
+ * other request is held to {@code kamila.http.max-body-size} here: by its {@code Content-Length} before it is read,
+ * or, when it is sent chunked, while it is read.
+ */
+@ApplicationScoped
+public class RequestBodyLimits {
+    // The context key under which Quarkus caps bodies without a Content-Length while they are read.
+    private static final String MAX_REQUEST_SIZE_KEY = "io.quarkus.max-request-size";
+
+    @ConfigProperty(name = "kamila.http.max-body-size", defaultValue = "10M")
+    MemorySize maxBodySize;
+
+    void register(@Observes Router router) {
+        // Right after the global limit, which would otherwise overwrite the narrower one.
+        router.route().order(RouteConstants.ROUTE_ORDER_UPLOAD_LIMIT + 1).handler(this::limit);
+    }
+
+    private void limit(RoutingContext context) {
+        var request = context.request();
+        if (request.method() == HttpMethod.POST && SnapshotResource.PATH.equals(context.normalizedPath())) {
+            context.next();
+            return;
+        }
+        var limit = maxBodySize.asLongValue();
+        var length = request.getHeader(HttpHeaders.CONTENT_LENGTH);
+        if (length == null) {
+            context.put(MAX_REQUEST_SIZE_KEY, limit);
+        } else if (Long.parseLong(length) > limit) {
+            context.response()
+                    .putHeader(HttpHeaders.CONNECTION, HttpHeaders.CLOSE)
+                    .setStatusCode(Response.Status.REQUEST_ENTITY_TOO_LARGE.getStatusCode())
+                    .end();
+            return;
+        }
+        context.next();
+    }
+}
@@ -0,0 +1,55 @@
+package ru.kamila.resources;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import lombok.extern.slf4j.Slf4j;
+import ru.kamila.services.SnapshotService;
+
+import java.io.InputStream;
+
+@Path(SnapshotResource.PATH)
+@Slf4j
+public class SnapshotResource {
+    static final String PATH = "/api/v1/snapshot";
+
+    @Inject
+    SnapshotService snapshotService;
+
+    @GET
+    @Produces(SnapshotService.MEDIA_TYPE)
+    public Response exportSnapshot(@QueryParam("blobs") @DefaultValue("false") boolean blobs) {
+        StreamingOutput body = out -> snapshotService.export(out, blobs);
+        return Response.ok(body)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"kamila-snapshot.ndjson\"")
+                .build();
+    }
+
+    @POST
+    @Consumes(SnapshotService.MEDIA_TYPE)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response importSnapshot(InputStream body, @QueryParam("blobs") @DefaultValue("true") boolean blobs) {
+        try {
+            return Response.ok(snapshotService.importSnapshot(body, blobs)).build();
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
+        } catch (Exception e) {
+            log.error("Error importing snapshot", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package ru.kamila.services;
+
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Query;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import ru.kamila.models.AuthorProfile;
+import ru.kamila.models.CoAuthor;
+import ru.kamila.models.KnowledgeWrittenEvent;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps per-author aggregates on the graph, so author profiles are served from a single node and co-authors from a
+ * single relationship expansion:
+ * <ul>
+ *     <li>{@code a.works}, the number of works of the author;</li>
+ *     <li>{@code a.years} and {@code a.yearCounts}, a histogram of works per creation year as two parallel lists,
+ *     since Neo4j cannot store a map as a property;</li>
+ *     <li>{@code (:Author)-[:COAUTHORED {weight}]->(:Author)} from the author with the lower id to the other one,
+ *     where the weight is the number of works they share.</li>
+ * </ul>
+ * The authors of written documents, including those a refresh unlinked, are updated incrementally in the background.
+ * Authors without aggregates are filled in at startup, and a nightly reconcile recomputes every author to repair
+ * updates lost to a failure.
+ */
+@ApplicationScoped
+@Slf4j
+public class AuthorStats {
+
+    private static final String UPDATE = """
+            UNWIND $ids AS id
+            MATCH (a:Author {id: id})
+            CALL {
+              WITH a
+              MATCH (a)<-[:WRITTEN_BY]-(k:Knowledge)
+              WHERE k.creationDate > 0
+              WITH k.creationDate AS year, count(*) AS works
+              ORDER BY year DESC
+              RETURN collect(year) AS years, collect(works) AS yearCounts
+            }
+            SET a.works = COUNT { (a)<-[:WRITTEN_BY]-(:Knowledge) }, a.years = years, a.yearCounts = yearCounts
+            WITH a
+            CALL {
+              WITH a
+              OPTIONAL MATCH (a)-[old:COAUTHORED]-(:Author)
+              DELETE old
+            }
+            CALL {
+              WITH a
+              MATCH (a)<-[:WRITTEN_BY]-(:Knowledge)-[:WRITTEN_BY]->(b:Author)
+              WHERE b <> a
+              WITH a, b, count(*) AS weight
+              WITH CASE WHEN a.id < b.id THEN [a, b] ELSE [b, a] END AS pair, weight
+              WITH pair[0] AS lower, pair[1] AS higher, weight
+              MERGE (lower)-[c:COAUTHORED]->(higher)
+              SET c.weight = weight
+            }
+            """;
+
+    private static final String PROFILE = """
+            MATCH (a:Author {id: $id})
+            RETURN a.id AS id, a.name AS name,
+                   coalesce(a.works, COUNT { (a)<-[:WRITTEN_BY]-(:Knowledge) }) AS works,
+                   coalesce(a.years, []) AS years, coalesce(a.yearCounts, []) AS yearCounts
+            """;
+
+    private static final String COAUTHORS = """
+            MATCH (a:Author {id: $id})
+            CALL {
+              WITH a
+              MATCH (a)-[c:COAUTHORED]-(b:Author)
+              WITH b, c
+              ORDER BY c.weight DESC, b.id ASC
+              LIMIT $limit
+              RETURN collect({id: b.id, name: b.name, weight: c.weight}) AS coauthors
+            }
+            RETURN coauthors
+            """;
+
+    @Inject
+    Driver driver;
+
+    @Inject
+    Instrumentation instrumentation;
+
+    @ConfigProperty(name = "kamila.authors.rebuild-batch-size", defaultValue = "500")
+    int rebuildBatchSize;
+
+    @ConfigProperty(name = "kamila.authors.max-coauthors", defaultValue = "100")
+    int maxCoAuthors;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ExecutorService updater = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "author-stats");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    void onStart(@Observes StartupEvent event) {
+        updater.execute(() -> {
+            try {
+                rebuild("a.works IS NULL");
+            } catch (Exception e) {
+                log.error("Failed to bootstrap author statistics", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        updater.shutdownNow();
+    }
+
+    void onKnowledgeWritten(@Observes KnowledgeWrittenEvent event) {
+        var ids = List.copyOf(event.authorIds());
+        if (ids.isEmpty()) {
+            return;
+        }
+        updater.execute(() -> {
+            try {
+                update(ids);
+            } catch (Exception e) {
+                log.error("Failed to update statistics of {} authors, the next reconcile will repair them", ids.size(), e);
+            }
+        });
+    }
+
+    @Scheduled(cron = "${kamila.authors.reconcile-cron:0 30 3 * * ?}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledReconcile() {
+        rebuild("true");
+    }
+
+    /**
+     * Recomputes the aggregates and co-authorship edges of the given authors.
+     */
+    public void update(List<String> ids) {
+        writeLock.lock();
+        try (var session = driver.session()) {
+            session.executeWrite(tx -> tx.run(UPDATE, Values.parameters("ids", ids)).consume());
+        } finally {
+            writeLock.unlock();
+        }
+        log.debug("Updated statistics of {} authors", ids.size());
+    }
+
+    /**
+     * Returns the profile of an author, or {@code null} if there is no such author.
+     */
+    public AuthorProfile getProfile(String id) {
+        var records = read("author-profile", new Query(PROFILE, Values.parameters("id", id)));
+        if (records.isEmpty()) {
+            return null;
+        }
+        var record = records.get(0);
+        var years = record.get("years").asList(Value::asInt);
+        var yearCounts = record.get("yearCounts").asList(Value::asInt);
+        var histogram = new LinkedHashMap<Integer, Integer>();
+        for (var i = 0; i < years.size(); i++) {
+            histogram.put(years.get(i), yearCounts.get(i));
+        }
+        return new AuthorProfile(record.get("id").asString(), record.get("name").asString(), record.get("works").asInt(), histogram);
+    }
+
+    /**
+     * Returns at most {@code limit} co-authors of an author, capped at {@code kamila.authors.max-coauthors}, those
+     * with the most shared works first, or {@code null} if there is no such author.
+     */
+    public List<CoAuthor> getCoAuthors(String id, int limit) {
+        var records = read("author-coauthors", new Query(COAUTHORS,
+                Values.parameters("id", id, "limit", Math.max(1, Math.min(limit, maxCoAuthors)))));
+        if (records.isEmpty()) {
+            return null;
+        }
+        return records.get(0).get("coauthors").asList(coauthor -> new CoAuthor(
+                coauthor.get("id").asString(), coauthor.get("name").asString(), coauthor.get("weight").asInt()));
+    }
+
+    /**
+     * Recomputes every author matching a condition on {@code a}, one batch of authors per transaction. Aggregates
+     * are replaced in place, so readers never see an author without them while the rebuild is running.
+     */
+    void rebuild(String condition) {
+        var started = System.currentTimeMillis();
+        var lastId = "";
+        var processed = 0;
+        while (true) {
+            var afterId = lastId;
+            List<String> ids;
+            try (var session = driver.session()) {
+                ids = session.executeRead(tx -> tx.run("""
+                                MATCH (a:Author)
+                                WHERE a.id > $afterId AND %s
+                                RETURN a.id AS id
+                                ORDER BY id
+                                LIMIT $limit
+                                """.formatted(condition), Values.parameters("afterId", afterId, "limit", rebuildBatchSize))
+                        .list(record -> record.get("id").asString()));
+            }
+            if (ids.isEmpty()) {
+                break;
+            }
+            update(ids);
+            processed += ids.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+        if (processed > 0) {
+            log.info("Recomputed statistics of {} authors in {} ms", processed, System.currentTimeMillis() - started);
+        }
+    }
+
+    private List<Record> read(String name, Query query) {
+        return instrumentation.query(name, () -> {
+            try (var session = driver.session()) {
+                return session.executeRead(tx -> tx.run(query).list());
+            }
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package ru.kamila.services;
+
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Values;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * One-shot migration that moves file contents still stored as {@code k.file} on
+ * {@code :Knowledge} nodes into the {@link BlobStore}, leaving only the hash and size on the node.
+ * Once every node is migrated the query finds nothing, so running it on each start is a no-op.
+ */
+@ApplicationScoped
+@Startup
+@Slf4j
+public class BlobMigration {
+
+    @Inject
+    Driver driver;
+
+    @Inject
+    BlobStore blobStore;
+
+    @ConfigProperty(name = "kamila.blob-store.migration.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "kamila.blob-store.migration.batch-size", defaultValue = "10")
+    int batchSize;
+
+    @PostConstruct
+    void migrate() {
+        if (!enabled) {
+            return;
+        }
+        var migrated = 0;
+        int batch;
+        do {
+            batch = migrateBatch();
+            migrated += batch;
+        } while (batch > 0);
+        if (migrated > 0) {
+            log.info("Moved {} embedded files from Neo4j into the blob store.", migrated);
+        }
+    }
+
+    private int migrateBatch() {
+        try (var session = driver.session()) {
+            return session.executeWrite(tx -> {
+                var records = tx.run("""
+                                MATCH (k:Knowledge)
+                                WHERE k.file IS NOT NULL
+                                RETURN k.id AS id, k.file AS file
+                                LIMIT $limit
+                                """, Values.parameters("limit", batchSize))
+                        .list();
+                for (var record : records) {
+                    BlobStore.Blob blob;
+                    try {
+                        blob = blobStore.put(record.get("file").asByteArray());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not migrate file of knowledge " + record.get("id").asString(), e);
+                    }
+                    tx.run("""
+                                    MATCH (k:Knowledge {id: $id})
+                                    SET k.fileHash = $fileHash,
+                                        k.fileSize = $fileSize
+                                    REMOVE k.file
+                                    """,
+                            Values.parameters("id", record.get("id").asString(), "fileHash", blob.hash(), "fileSize", blob.size()));
+                }
+                return records.size();
+            });
+        }
+    }
+}
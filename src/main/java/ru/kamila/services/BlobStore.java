@@ -0,0 +1,202 @@
+package ru.kamila.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Local content-addressed store for document files.
+ * <p>
+ * Files are keyed by the SHA-256 of their content and laid out as {@code ab/cd/abcd...}.
+ * Writes go to a temporary file in the same directory and are moved into place atomically,
+ * so a reader never observes a partially written blob.
+ */
+@ApplicationScoped
+@Slf4j
+public class BlobStore {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @ConfigProperty(name = "kamila.blob-store.path", defaultValue = "data/blobs")
+    String rootPath;
+
+    Path root;
+
+    @PostConstruct
+    void init() {
+        root = Path.of(rootPath);
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create blob store directory " + root, e);
+        }
+        log.info("Using blob store at {}", root.toAbsolutePath());
+    }
+
+    public Blob put(byte[] content) throws IOException {
+        var hash = HexFormat.of().formatHex(sha256().digest(content));
+        var target = path(hash);
+        if (Files.exists(target)) {
+            return new Blob(hash, content.length);
+        }
+        Files.createDirectories(target.getParent());
+        var tmp = Files.createTempFile(target.getParent(), hash, ".tmp");
+        try {
+            Files.write(tmp, content, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SYNC);
+            moveIntoPlace(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        log.debug("Stored blob {} ({} bytes)", hash, content.length);
+        return new Blob(hash, content.length);
+    }
+
+    /**
+     * Copies a stream into the store while hashing it, so the content is never held in memory as a whole.
+     *
+     * @throws IOException when the stream fails or delivers more than {@code maxBytes}
+     */
+    public Blob put(InputStream in, long maxBytes) throws IOException {
+        return put(in::transferTo, maxBytes);
+    }
+
+    /**
+     * Stores the bytes a writer pushes, for sources that cannot be read as a stream, such as a decoder. The content
+     * is hashed on the way to disk and never held in memory as a whole.
+     *
+     * @throws IOException when the writer fails or writes more than {@code maxBytes}
+     */
+    public Blob put(ContentWriter writer, long maxBytes) throws IOException {
+        var digest = sha256();
+        var tmp = Files.createTempFile(root, "upload", ".tmp");
+        try {
+            long size;
+            try (var out = new LimitedOutputStream(new DigestOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp, StandardOpenOption.TRUNCATE_EXISTING), BUFFER_SIZE), digest), maxBytes)) {
+                writer.writeTo(out);
+                size = out.written;
+            }
+            var hash = HexFormat.of().formatHex(digest.digest());
+            var target = path(hash);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+                moveIntoPlace(tmp, target);
+            }
+            log.debug("Stored blob {} ({} bytes)", hash, size);
+            return new Blob(hash, size);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public boolean exists(String hash) {
+        return isValidHash(hash) && Files.isRegularFile(path(hash));
+    }
+
+    /**
+     * Resolves the on-disk location of a blob. The path can be handed to the HTTP layer as is,
+     * which lets Vert.x serve it with {@code sendfile} instead of copying it through the heap.
+     */
+    public Path path(String hash) {
+        if (!isValidHash(hash)) {
+            throw new IllegalArgumentException("Invalid blob hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    /**
+     * Maps a blob read-only into memory. The mapping stays valid after the channel is closed.
+     */
+    public MappedByteBuffer map(String hash) throws IOException {
+        try (var channel = FileChannel.open(path(hash), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    static void moveIntoPlace(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static boolean isValidHash(String hash) {
+        return hash != null && hash.length() == 64 && hash.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'));
+    }
+
+    public record Blob(String hash, long size) {
+    }
+
+    /**
+     * Thrown when content exceeds the size limit it is stored with.
+     */
+    public static final class TooLargeException extends IOException {
+        public TooLargeException(long maxBytes) {
+            super("File exceeds the maximum allowed size of " + maxBytes + " bytes");
+        }
+    }
+
+    @FunctionalInterface
+    public interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static final class LimitedOutputStream extends FilterOutputStream {
+        private final long maxBytes;
+        private long written;
+
+        LimitedOutputStream(OutputStream out, long maxBytes) {
+            super(out);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            count(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            count(len);
+            out.write(b, off, len);
+        }
+
+        private void count(int bytes) throws IOException {
+            written += bytes;
+            if (written > maxBytes) {
+                throw new TooLargeException(maxBytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package ru.kamila.services;
+
+import io.smallrye.faulttolerance.api.ExponentialBackoff;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Retry;
+import org.eclipse.microprofile.faulttolerance.Timeout;
+import org.eclipse.microprofile.faulttolerance.exceptions.BulkheadException;
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
+import org.eclipse.microprofile.faulttolerance.exceptions.TimeoutException;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import ru.kamila.clients.KpfuClient;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+/**
+ * The only way out to the DSpace repository. Every kind of call has its own fault-tolerance policy, so a slow or
+ * failing repository ties up at most a bulkhead's worth of threads per kind instead of every request thread:
+ * <ul>
+ *     <li>a bulkhead that rejects calls beyond its limit at once, with a {@link BulkheadException};</li>
+ *     <li>a timeout on the whole call, including reading the part of the response that is used;</li>
+ *     <li>a circuit breaker that fails calls fast with a {@link CircuitBreakerOpenException} while most recent calls
+ *     have failed, and lets a few through to probe after a delay;</li>
+ *     <li>for idempotent calls, retries with exponential backoff and jitter, so that callers failing together do not
+ *     come back together. Client errors ({@code 4xx}) are neither retried nor counted against the circuit.</li>
+ * </ul>
+ * The annotation values are defaults and can be overridden with MicroProfile Fault Tolerance properties, e.g.
+ * {@code ru.kamila.services.DspaceGateway/fetchPage/Bulkhead/value}. Socket connect and read timeouts are set on the
+ * transports as well, so a stalled connection fails even where a call-level timeout cannot interrupt it. Invocation,
+ * retry, bulkhead and circuit breaker metrics are published to Micrometer under {@code ft.*}.
+ */
+@ApplicationScoped
+public class DspaceGateway {
+
+    @RestClient
+    KpfuClient kpfuClient;
+
+    @Inject
+    BlobStore blobStore;
+
+    @ConfigProperty(name = "kamila.upstream.read-timeout", defaultValue = "20s")
+    Duration readTimeout;
+
+    /**
+     * Reads the part of a response that is needed, while the call's timeout still applies.
+     */
+    @FunctionalInterface
+    public interface ResponseReader<T> {
+        T read(Connection.Response response) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface OaiReader<T> {
+        T read(InputStream in) throws IOException, XMLStreamException;
+    }
+
+    /**
+     * An HTTP client error. Asking again will not change the answer, so it is not retried and does not open the
+     * circuit.
+     */
+    public static final class ClientErrorException extends HttpStatusException {
+        public ClientErrorException(int statusCode, String url) {
+            super("HTTP error fetching URL", statusCode, url);
+        }
+    }
+
+    /**
+     * Fetches an HTML page. Server errors are thrown as {@link HttpStatusException} and retried, client errors as
+     * {@link ClientErrorException}; {@code 304 Not Modified} is passed to the reader.
+     */
+    @Bulkhead(8)
+    @Timeout(value = 30, unit = ChronoUnit.SECONDS)
+    @CircuitBreaker(requestVolumeThreshold = 20, failureRatio = 0.5, delay = 30, delayUnit = ChronoUnit.SECONDS,
+            successThreshold = 2, skipOn = ClientErrorException.class)
+    @Retry(maxRetries = 2, delay = 500, jitter = 250, retryOn = IOException.class,
+            abortOn = {ClientErrorException.class, BulkheadException.class, CircuitBreakerOpenException.class})
+    @ExponentialBackoff(maxDelay = 5, maxDelayUnit = ChronoUnit.SECONDS)
+    public <T> T fetchPage(String url, Map<String, String> headers, ResponseReader<T> reader) throws IOException {
+        var response = Jsoup.connect(url)
+                .timeout((int) readTimeout.toMillis())
+                .headers(headers)
+                .ignoreHttpErrors(true)
+                .execute();
+        checkStatus(response.statusCode(), url);
+        return reader.read(response);
+    }
+
+    /**
+     * Fetches and parses a whole HTML page, e.g. a collection browse listing.
+     */
+    @Bulkhead(8)
+    @Timeout(value = 30, unit = ChronoUnit.SECONDS)
+    @CircuitBreaker(requestVolumeThreshold = 20, failureRatio = 0.5, delay = 30, delayUnit = ChronoUnit.SECONDS,
+            successThreshold = 2, skipOn = ClientErrorException.class)
+    @Retry(maxRetries = 2, delay = 500, jitter = 250, retryOn = IOException.class,
+            abortOn = {ClientErrorException.class, BulkheadException.class, CircuitBreakerOpenException.class})
+    @ExponentialBackoff(maxDelay = 5, maxDelayUnit = ChronoUnit.SECONDS)
+    public Document fetchDocument(String url) throws IOException {
+        var response = Jsoup.connect(url)
+                .timeout((int) readTimeout.toMillis())
+                .ignoreHttpErrors(true)
+                .execute();
+        checkStatus(response.statusCode(), url);
+        return response.parse();
+    }
+
+    /**
+     * Fetches the headers of a file. Only an optimization for refreshes, so it is neither retried nor waited on for
+     * long.
+     */
+    @Bulkhead(8)
+    @Timeout(value = 10, unit = ChronoUnit.SECONDS)
+    @CircuitBreaker(requestVolumeThreshold = 20, failureRatio = 0.5, delay = 30, delayUnit = ChronoUnit.SECONDS,
+            successThreshold = 2)
+    public Response fileHead(String url) {
+        return kpfuClient.fileHead(url);
+    }
+
+    /**
+     * Streams a file into the blob store. The timeout is generous, since it covers the whole transfer of up to
+     * {@code maxBytes}; a stalled transfer is cut off sooner by the client's read timeout.
+     */
+    @Bulkhead(4)
+    @Timeout(value = 10, unit = ChronoUnit.MINUTES)
+    @CircuitBreaker(requestVolumeThreshold = 10, failureRatio = 0.5, delay = 30, delayUnit = ChronoUnit.SECONDS,
+            successThreshold = 2, skipOn = BlobStore.TooLargeException.class)
+    @Retry(maxRetries = 2, delay = 1000, jitter = 500, retryOn = IOException.class,
+            abortOn = {BlobStore.TooLargeException.class, BulkheadException.class, CircuitBreakerOpenException.class,
+                    TimeoutException.class})
+    @ExponentialBackoff(maxDelay = 10, maxDelayUnit = ChronoUnit.SECONDS)
+    public BlobStore.Blob downloadFile(String url, long maxBytes) throws IOException {
+        try (var in = kpfuClient.downloadFile(url)) {
+            return blobStore.put(in, maxBytes);
+        }
+    }
+
+    /**
+     * Sends an OAI-PMH request and reads its response. Not retried here: the harvester honours the repository's
+     * {@code Retry-After} itself. A {@code 503} is the repository's flow control rather than a failure, so it is thrown
+     * as a {@link ServiceUnavailableException} that does not count against the circuit.
+     */
+    @Bulkhead(2)
+    @Timeout(value = 2, unit = ChronoUnit.MINUTES)
+    @CircuitBreaker(requestVolumeThreshold = 5, failureRatio = 0.6, delay = 1, delayUnit = ChronoUnit.MINUTES,
+            skipOn = ServiceUnavailableException.class)
+    public <T> T oai(String endpoint, String verb, String metadataPrefix, String set, String from, String resumptionToken,
+                     OaiReader<T> reader) throws IOException, XMLStreamException {
+        try (var in = kpfuClient.oai(endpoint, verb, metadataPrefix, set, from, resumptionToken)) {
+            return reader.read(in);
+        } catch (WebApplicationException e) {
+            if (e.getResponse().getStatus() == Response.Status.SERVICE_UNAVAILABLE.getStatusCode()
+                    && !(e instanceof ServiceUnavailableException)) {
+                throw new ServiceUnavailableException(e.getResponse(), e);
+            }
+            throw e;
+        }
+    }
+
+    private static void checkStatus(int status, String url) throws HttpStatusException {
+        if (status >= 500) {
+            throw new HttpStatusException("HTTP error fetching URL", status, url);
+        }
+        if (status >= 400) {
+            throw new ClientErrorException(status, url);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package ru.kamila.services;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.StreamParser;
+import ru.kamila.models.DspaceMetadata;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Scrapes item metadata from DSpace XMLUI pages. Everything except a missing bitstream link comes from the
+ * Dublin Core and Highwire {@code <meta>} tags in {@code <head>}, so the streaming variant stops reading the page at
+ * {@code </head>}. Both variants feed the same collector and therefore produce the same result for the same page.
+ */
+public final class DspacePageParser {
+    public static final String FULL_QUERY = "?show=full";
+    private static final String DSPACE_HOST = "https://dspace.kpfu.ru";
+    private static final String HANDLE_SEGMENT = "handle";
+    private static final Pattern YEAR = Pattern.compile("(?<!\\d)(\\d{4})(?!\\d)");
+
+    private DspacePageParser() {
+    }
+
+    /**
+     * Extracts the handle, such as {@code net/160512}, from an XMLUI item URL such as
+     * {@code https://dspace.kpfu.ru/xmlui/handle/net/160512?show=full}. The handle is the key documents are stored
+     * under, so only the prefix and suffix segments after {@code handle/} are taken: a trailing slash, the query and
+     * the fragment are left out.
+     *
+     * @throws IllegalArgumentException when the URL has no {@code handle/<prefix>/<suffix>} path
+     */
+    public static String handleFromUrl(String itemUrl) {
+        String path;
+        try {
+            path = new URI(StringUtils.trimToEmpty(itemUrl)).getPath();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Malformed DSpace item URL: " + itemUrl, e);
+        }
+        var segments = StringUtils.split(StringUtils.defaultString(path), '/');
+        for (int i = 0; i + 2 < segments.length; i++) {
+            if (HANDLE_SEGMENT.equals(segments[i]) && !segments[i + 1].isBlank() && !segments[i + 2].isBlank()) {
+                return segments[i + 1] + "/" + segments[i + 2];
+            }
+        }
+        throw new IllegalArgumentException("No DSpace handle in item URL: " + itemUrl);
+    }
+
+    /**
+     * Extracts item page links from an XMLUI browse listing.
+     */
+    public static List<String> parseItemLinks(Document doc) {
+        return doc.select(".ds-artifact-item a[href*=/handle/]").stream()
+                .map(a -> a.attr("abs:href"))
+                .filter(href -> !href.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * Extracts metadata from a fully parsed page.
+     */
+    public static DspaceMetadata parse(Document doc, String itemUrl) {
+        var collector = new MetadataCollector(handleFromUrl(itemUrl));
+        for (var meta : doc.head().select("meta[name]")) {
+            collector.meta(meta.attr("name"), meta.attr("content"));
+        }
+        if (collector.needsFileLink()) {
+            for (var a : doc.body().select("a[href]")) {
+                if (collector.link(a.attr("href"))) {
+                    break;
+                }
+            }
+        }
+        return collector.build();
+    }
+
+    /**
+     * Extracts metadata while the page is being parsed and stops at the end of {@code <head>}. The body is only read
+     * when the head has no {@code citation_pdf_url}, and then only up to the first file link.
+     */
+    public static DspaceMetadata parse(StreamParser parser, String itemUrl) throws IOException {
+        var collector = new MetadataCollector(handleFromUrl(itemUrl));
+        var elements = parser.iterator();
+        while (elements.hasNext()) {
+            var element = elements.next();
+            if (element.nameIs("meta") && element.hasAttr("name")) {
+                collector.meta(element.attr("name"), element.attr("content"));
+            } else if (element.nameIs("head")) {
+                break;
+            }
+        }
+        Element link;
+        while (collector.needsFileLink() && (link = parser.selectNext("a[href]")) != null) {
+            collector.link(link.attr("href"));
+            link.remove();
+        }
+        parser.stop();
+        return collector.build();
+    }
+
+    /**
+     * Parses the year out of a DSpace date, which may be a bare year, an ISO date such as {@code 2021-05-12} or a
+     * localized one such as {@code 12.05.2021}. Returns {@code null} when there is no four-digit year.
+     */
+    static Integer parseYear(String value) {
+        var matcher = YEAR.matcher(value);
+        return matcher.find() ? Integer.valueOf(matcher.group(1)) : null;
+    }
+
+    private static final class MetadataCollector {
+        private final String handle;
+        private final List<String> authors = new ArrayList<>();
+        private Integer citationYear;
+        private Integer issuedYear;
+        private String issuerId = "";
+        private String summary = "";
+        private String title = "";
+        private String type = "";
+        private String fileDownloadUrl;
+
+        private MetadataCollector(String handle) {
+            this.handle = handle;
+        }
+
+        void meta(String name, String content) {
+            switch (name) {
+                case "DC.creator" -> authors.add(content);
+                case "citation_date" -> citationYear = citationYear != null ? citationYear : parseYear(content);
+                case "DCTERMS.issued" -> issuedYear = issuedYear != null ? issuedYear : parseYear(content);
+                case "citation_issn" -> issuerId = content;
+                case "DCTERMS.abstract" -> summary = content;
+                case "DC.title" -> title = content;
+                case "DC.type" -> type = content;
+                case "citation_pdf_url" -> fileDownloadUrl = fileDownloadUrl != null || content.isBlank() ? fileDownloadUrl : content;
+                default -> {
+                }
+            }
+        }
+
+        boolean needsFileLink() {
+            return fileDownloadUrl == null;
+        }
+
+        /**
+         * Falls back to the first link to the file viewer, rewritten into a bitstream URL.
+         */
+        boolean link(String href) {
+            if (!href.contains("file")) {
+                return false;
+            }
+            fileDownloadUrl = DSPACE_HOST + href
+                    .replace("viewer?file=27232;", "bitstream/handle/" + handle + "/")
+                    .replace("&", "?");
+            return true;
+        }
+
+        DspaceMetadata build() {
+            var year = citationYear != null ? citationYear : issuedYear != null ? issuedYear : 0;
+            return new DspaceMetadata(handle, authors, year, issuerId, summary, title, type, fileDownloadUrl);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package ru.kamila.services;
+
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.neo4j.driver.Driver;
+import ru.kamila.models.FacetCounts;
+import ru.kamila.models.KnowledgeFilter;
+import ru.kamila.models.KnowledgeWrittenEvent;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory facet index over creation year, type and issuer. Every document gets a dense ordinal, and every facet
+ * value a {@link BitSet} of the ordinals that carry it, so counting a facet for a set of hits is one bitwise AND
+ * and a popcount per value instead of an aggregation query.
+ * <p>
+ * Built from the graph in the background at startup, kept current from {@link KnowledgeWrittenEvent}, which
+ * already carries the written values, and rebuilt every {@code kamila.facets.rebuild-interval}. Until the first
+ * build finishes, {@link #count} returns {@code null}.
+ */
+@ApplicationScoped
+@Slf4j
+public class FacetIndex {
+
+    private static final String ALL_FACETS = """
+            MATCH (k:Knowledge)
+            RETURN k.id AS id, k.creationDate AS year, k.type AS type, k.issuerId AS issuer
+            """;
+
+    @Inject
+    Driver driver;
+
+    @ConfigProperty(name = "kamila.facets.max-values", defaultValue = "50")
+    int maxValues;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService updater = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "facet-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Facets facets;
+
+    private record Row(Integer year, String type, String issuer) {
+    }
+
+    /**
+     * Ordinals and value bitsets. Not thread-safe; guarded by the index lock once published.
+     */
+    private static final class Facets {
+        final Map<String, Integer> ordinals = new HashMap<>();
+        final List<Row> rows = new ArrayList<>();
+        final BitSet all = new BitSet();
+        final Map<Integer, BitSet> years = new HashMap<>();
+        final Map<String, BitSet> types = new HashMap<>();
+        final Map<String, BitSet> issuers = new HashMap<>();
+
+        void put(String id, Row row) {
+            var ordinal = ordinals.get(id);
+            if (ordinal == null) {
+                ordinal = rows.size();
+                ordinals.put(id, ordinal);
+                rows.add(row);
+            } else {
+                var previous = rows.set(ordinal, row);
+                clear(years, previous.year(), ordinal);
+                clear(types, previous.type(), ordinal);
+                clear(issuers, previous.issuer(), ordinal);
+            }
+            set(years, row.year(), ordinal);
+            set(types, row.type(), ordinal);
+            set(issuers, row.issuer(), ordinal);
+            all.set(ordinal);
+        }
+
+        private static <K> void set(Map<K, BitSet> values, K value, int ordinal) {
+            if (value != null) {
+                values.computeIfAbsent(value, key -> new BitSet()).set(ordinal);
+            }
+        }
+
+        private static <K> void clear(Map<K, BitSet> values, K value, int ordinal) {
+            var bits = value == null ? null : values.get(value);
+            if (bits != null) {
+                bits.clear(ordinal);
+                if (bits.isEmpty()) {
+                    values.remove(value);
+                }
+            }
+        }
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        updater.execute(this::rebuild);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        updater.shutdownNow();
+    }
+
+    void onKnowledgeWritten(@Observes KnowledgeWrittenEvent event) {
+        var rows = new LinkedHashMap<String, Row>();
+        for (var knowledge : event.knowledges()) {
+            rows.put(knowledge.getId().toString(), row(knowledge.getCreationDate(), knowledge.getType(), knowledge.getIssuerId()));
+        }
+        updater.execute(() -> {
+            var current = facets;
+            if (current == null) {
+                // The first build failed; the next one reads this write from the graph.
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                rows.forEach(current::put);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @Scheduled(every = "${kamila.facets.rebuild-interval:1h}", delayed = "${kamila.facets.rebuild-interval:1h}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledRebuild() {
+        updater.execute(this::rebuild);
+    }
+
+    /**
+     * Maps document ids, e.g. the full-text hits of a query, to ordinals. Unknown ids are skipped.
+     */
+    public BitSet ordinalsOf(Collection<String> ids) {
+        var current = facets;
+        var bits = new BitSet();
+        if (current == null) {
+            return bits;
+        }
+        lock.readLock().lock();
+        try {
+            for (var id : ids) {
+                var ordinal = current.ordinals.get(id);
+                if (ordinal != null) {
+                    bits.set(ordinal);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return bits;
+    }
+
+    /**
+     * Counts facet values among {@code hits}, or among all documents when {@code hits} is {@code null}.
+     *
+     * @return the counts, or {@code null} while the index is still being built
+     */
+    public FacetCounts count(BitSet hits, KnowledgeFilter filter) {
+        var current = facets;
+        if (current == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            var base = (BitSet) current.all.clone();
+            if (hits != null) {
+                base.and(hits);
+            }
+            var byYear = union(current.years, filter.years());
+            var byType = union(current.types, filter.types());
+            var byIssuer = union(current.issuers, filter.issuers());
+            var scratch = new BitSet(base.length());
+            return new FacetCounts(
+                    intersect(base, byYear, byType, byIssuer).cardinality(),
+                    counts(current.years, intersect(base, byType, byIssuer), scratch, Map.Entry.<Integer, Integer>comparingByKey().reversed()),
+                    counts(current.types, intersect(base, byYear, byIssuer), scratch, byCount()),
+                    counts(current.issuers, intersect(base, byYear, byType), scratch, byCount()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void rebuild() {
+        var started = System.currentTimeMillis();
+        try (var session = driver.session()) {
+            var rebuilt = new Facets();
+            session.executeRead(tx -> {
+                tx.run(ALL_FACETS).forEachRemaining(record -> rebuilt.put(record.get("id").asString(), row(
+                        record.get("year").isNull() ? null : record.get("year").asInt(),
+                        record.get("type").asString(null),
+                        record.get("issuer").asString(null))));
+                return null;
+            });
+            facets = rebuilt;
+            log.info("Built the facet index over {} documents in {} ms", rebuilt.rows.size(), System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            log.error("Failed to build the facet index", e);
+        }
+    }
+
+    /**
+     * Normalizes the values the parser uses for "unknown": year {@code 0} and blank strings.
+     */
+    private static Row row(Integer year, String type, String issuer) {
+        return new Row(
+                year == null || year == 0 ? null : year,
+                type == null || type.isBlank() ? null : type,
+                issuer == null || issuer.isBlank() ? null : issuer);
+    }
+
+    private static <K> BitSet union(Map<K, BitSet> values, List<K> selected) {
+        if (selected.isEmpty()) {
+            return null;
+        }
+        var bits = new BitSet();
+        for (var value : selected) {
+            var valueBits = values.get(value);
+            if (valueBits != null) {
+                bits.or(valueBits);
+            }
+        }
+        return bits;
+    }
+
+    private static BitSet intersect(BitSet base, BitSet... filters) {
+        var bits = (BitSet) base.clone();
+        for (var filter : filters) {
+            if (filter != null) {
+                bits.and(filter);
+            }
+        }
+        return bits;
+    }
+
+    private <K> Map<K, Integer> counts(Map<K, BitSet> values, BitSet base, BitSet scratch, Comparator<Map.Entry<K, Integer>> order) {
+        var counts = new ArrayList<Map.Entry<K, Integer>>();
+        for (var entry : values.entrySet()) {
+            scratch.clear();
+            scratch.or(entry.getValue());
+            scratch.and(base);
+            var count = scratch.cardinality();
+            if (count > 0) {
+                counts.add(Map.entry(entry.getKey(), count));
+            }
+        }
+        counts.sort(order);
+        var result = new LinkedHashMap<K, Integer>();
+        counts.stream().limit(maxValues).forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        return result;
+    }
+
+    private static <K> Comparator<Map.Entry<K, Integer>> byCount() {
+        return Map.Entry.<K, Integer>comparingByValue().reversed().thenComparing(entry -> String.valueOf(entry.getKey()));
+    }
+}
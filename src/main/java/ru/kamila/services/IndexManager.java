@@ -2,37 +2,162 @@ package ru.kamila.services;
 
 import io.quarkus.runtime.Startup;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.neo4j.driver.Driver;
+import org.neo4j.driver.Values;
 
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Applies versioned schema migrations to Neo4j.
+ * <p>
+ * Each migration is applied once, in version order, and recorded as a {@code :SchemaMigration} node. New indexes and
+ * constraints are populated in the background by Neo4j; the component reports itself ready only once all of them
+ * are {@code ONLINE}, so queries never silently fall back to label scans.
+ */
 @ApplicationScoped
 @Startup
 @Slf4j
 public class IndexManager {
 
+    record Migration(int version, String description, List<String> statements) {
+    }
+
+    static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Full-text index over knowledge titles, summaries and authors", List.of("""
+                    CREATE FULLTEXT INDEX knowledge_search_index IF NOT EXISTS
+                    FOR (k:Knowledge)
+                    ON EACH [k.title, k.summary, k.authorNames]
+                    OPTIONS {
+                      indexConfig: {
+                        `fulltext.analyzer`: 'standard-folding'
+                      }
+                    }
+                    """)),
+            new Migration(2, "Uniqueness constraints on knowledge and author keys", List.of(
+                    "CREATE CONSTRAINT knowledge_id_unique IF NOT EXISTS FOR (k:Knowledge) REQUIRE k.id IS UNIQUE",
+                    "CREATE CONSTRAINT author_name_unique IF NOT EXISTS FOR (a:Author) REQUIRE a.name IS UNIQUE",
+                    "CREATE CONSTRAINT author_id_unique IF NOT EXISTS FOR (a:Author) REQUIRE a.id IS UNIQUE")),
+            new Migration(3, "Range index on knowledge creation date", List.of(
+                    "CREATE INDEX knowledge_creation_date IF NOT EXISTS FOR (k:Knowledge) ON (k.creationDate)")),
+            new Migration(4, "Full-text index over extracted document passages", List.of("""
+                    CREATE FULLTEXT INDEX passage_search_index IF NOT EXISTS
+                    FOR (p:Passage)
+                    ON EACH [p.text]
+                    OPTIONS {
+                      indexConfig: {
+                        `fulltext.analyzer`: 'standard-folding'
+                      }
+                    }
+                    """)),
+            new Migration(5, "Uniqueness constraint on the DSpace handle of knowledge", List.of(
+                    "CREATE CONSTRAINT knowledge_handle_unique IF NOT EXISTS FOR (k:Knowledge) REQUIRE k.handle IS UNIQUE")),
+            new Migration(6, "Range indexes on knowledge type and issuer for facet filters", List.of(
+                    "CREATE INDEX knowledge_type IF NOT EXISTS FOR (k:Knowledge) ON (k.type)",
+                    "CREATE INDEX knowledge_issuer_id IF NOT EXISTS FOR (k:Knowledge) ON (k.issuerId)")),
+            new Migration(7, "Uniqueness constraint on the endpoint of OAI-PMH harvest state", List.of(
+                    "CREATE CONSTRAINT harvest_state_endpoint_unique IF NOT EXISTS FOR (h:HarvestState) REQUIRE h.endpoint IS UNIQUE"))
+    );
+
     @Inject
     Driver driver;
 
+    @ConfigProperty(name = "kamila.schema.await-indexes-timeout", defaultValue = "10m")
+    Duration awaitIndexesTimeout;
+
+    private volatile boolean ready;
+    private volatile String status = "Applying schema migrations";
+    private ExecutorService indexWaiter;
+
     @PostConstruct
     void configureIndexes() {
-        log.info("Checking and creating Neo4j indexes if they don't exist...");
+        log.info("Checking and applying Neo4j schema migrations...");
+        var applied = appliedVersions();
+        for (var migration : MIGRATIONS) {
+            if (applied.contains(migration.version())) {
+                continue;
+            }
+            try {
+                apply(migration);
+            } catch (Exception e) {
+                status = "Schema migration " + migration.version() + " failed: " + e.getMessage();
+                log.error("Failed to apply schema migration {} ({})", migration.version(), migration.description(), e);
+                return;
+            }
+        }
+        log.info("Neo4j schema is up to date at version {}.", MIGRATIONS.get(MIGRATIONS.size() - 1).version());
+
+        status = "Waiting for indexes to come online";
+        indexWaiter = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "neo4j-index-waiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        indexWaiter.execute(this::awaitIndexes);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (indexWaiter != null) {
+            indexWaiter.shutdownNow();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    private HashSet<Integer> appliedVersions() {
+        try (var session = driver.session()) {
+            return session.executeRead(tx -> new HashSet<>(tx.run("MATCH (m:SchemaMigration) RETURN m.version AS version")
+                    .list(record -> record.get("version").asInt())));
+        }
+    }
+
+    private void apply(Migration migration) {
+        log.info("Applying schema migration {}: {}", migration.version(), migration.description());
+        // Schema changes cannot share a transaction with data writes, so each statement runs on its own.
+        try (var session = driver.session()) {
+            for (var statement : migration.statements()) {
+                session.executeWrite(tx -> tx.run(statement).consume());
+            }
+            session.executeWrite(tx -> tx.run("""
+                            MERGE (m:SchemaMigration {version: $version})
+                            SET m.description = $description,
+                                m.appliedAt = datetime()
+                            """,
+                    Values.parameters("version", migration.version(), "description", migration.description())).consume());
+        }
+    }
+
+    private void awaitIndexes() {
         try (var session = driver.session()) {
-            session.executeWrite(tx -> {
-                tx.run("""
-                            CREATE FULLTEXT INDEX knowledge_search_index IF NOT EXISTS
-                            FOR (k:Knowledge)
-                            ON EACH [k.title, k.summary, k.authorNames]
-                            OPTIONS {
-                              indexConfig: {
-                                `fulltext.analyzer`: 'standard-folding'
-                              }
-                            }
-                        """);
-                return null;
-            });
-            log.info("Successfully configured Neo4j indexes.");
+            session.run("CALL db.awaitIndexes($timeout)", Values.parameters("timeout", awaitIndexesTimeout.toSeconds())).consume();
+            var notOnline = session.run("SHOW INDEXES YIELD name, state WHERE state <> 'ONLINE' RETURN name, state")
+                    .list(record -> record.get("name").asString() + "=" + record.get("state").asString());
+            if (notOnline.isEmpty()) {
+                ready = true;
+                status = "All indexes online";
+                log.info("All Neo4j indexes are online.");
+            } else {
+                status = "Indexes not online: " + String.join(", ", notOnline);
+                log.error("Neo4j indexes did not come online: {}", notOnline);
+            }
+        } catch (Exception e) {
+            status = "Could not check index state: " + e.getMessage();
+            log.error("Failed while waiting for Neo4j indexes", e);
         }
     }
 }
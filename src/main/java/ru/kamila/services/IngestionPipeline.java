@@ -0,0 +1,368 @@
+package ru.kamila.services;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.kamila.entities.KnowledgeEntity;
+import ru.kamila.models.BulkKnowledgeRequest;
+import ru.kamila.models.DspaceMetadata;
+import ru.kamila.models.FetchedPage;
+import ru.kamila.models.IngestionJob;
+import ru.kamila.models.IngestionJob.Stage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Staged bulk ingestion: fetch HTML → parse metadata → download file → graph write.
+ * <p>
+ * The first three stages run on their own fixed-size pools with bounded queues; the graph write is handed to the
+ * {@link KnowledgeBatchWriter}, which groups records into batched transactions. Handing an item to a full stage
+ * blocks the upstream thread, so a slow stage throttles the ones before it instead of letting work pile up in memory.
+ * Items that fail with an I/O or database error are parked and resumed from the failed stage by a scheduled retry.
+ * <p>
+ * Page fetches and file downloads additionally share {@code kamila.ingestion.per-host-concurrency} permits per host,
+ * so however many stage threads there are, a single repository never sees more requests at once than that.
+ */
+@ApplicationScoped
+@Slf4j
+public class IngestionPipeline {
+
+    @Inject
+    KnowledgeService knowledgeService;
+
+    @Inject
+    KnowledgeBatchWriter batchWriter;
+
+    @Inject
+    Instrumentation instrumentation;
+
+    @ConfigProperty(name = "kamila.ingestion.fetch-concurrency", defaultValue = "4")
+    int fetchConcurrency;
+
+    @ConfigProperty(name = "kamila.ingestion.parse-concurrency", defaultValue = "2")
+    int parseConcurrency;
+
+    @ConfigProperty(name = "kamila.ingestion.download-concurrency", defaultValue = "4")
+    int downloadConcurrency;
+
+    @ConfigProperty(name = "kamila.ingestion.per-host-concurrency", defaultValue = "4")
+    int perHostConcurrency;
+
+    @ConfigProperty(name = "kamila.ingestion.queue-capacity", defaultValue = "100")
+    int queueCapacity;
+
+    @ConfigProperty(name = "kamila.ingestion.max-attempts", defaultValue = "3")
+    int maxAttempts;
+
+    @ConfigProperty(name = "kamila.ingestion.retry-backoff", defaultValue = "30s")
+    Duration retryBackoff;
+
+    @ConfigProperty(name = "kamila.ingestion.retained-jobs", defaultValue = "100")
+    int retainedJobs;
+
+    private final Map<UUID, IngestionJob> jobs = new ConcurrentHashMap<>();
+    private final Collection<Item> retries = new ConcurrentLinkedQueue<>();
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    private ExecutorService feeder;
+    private ThreadPoolExecutor fetchStage;
+    private ThreadPoolExecutor parseStage;
+    private ThreadPoolExecutor downloadStage;
+
+    @PostConstruct
+    void init() {
+        feeder = Executors.newSingleThreadExecutor(threadFactory("ingest-feeder"));
+        fetchStage = stage("ingest-fetch", fetchConcurrency);
+        parseStage = stage("ingest-parse", parseConcurrency);
+        downloadStage = stage("ingest-download", downloadConcurrency);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        for (var executor : List.of(feeder, fetchStage, parseStage, downloadStage)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Produces the item URLs of a job. It runs on the feeder thread and may discover items as it goes, e.g. page by
+     * page; handing an item over blocks while the fetch stage is full.
+     */
+    @FunctionalInterface
+    public interface ItemSource {
+        void feed(Consumer<String> items) throws IOException;
+    }
+
+    public IngestionJob submit(BulkKnowledgeRequest request) {
+        return submit(items -> {
+            var urls = new LinkedHashSet<String>();
+            if (request.urls() != null) {
+                urls.addAll(request.urls());
+            }
+            if (request.collectionUrl() != null && !request.collectionUrl().isBlank()) {
+                urls.addAll(knowledgeService.listCollectionItems(request.collectionUrl()));
+            }
+            urls.forEach(items);
+        }, request.refresh());
+    }
+
+    public IngestionJob submit(ItemSource source, boolean refresh) {
+        var job = new IngestionJob();
+        evictFinishedJobs();
+        jobs.put(job.getId(), job);
+        feeder.execute(() -> feed(job, source, refresh));
+        log.info("Queued ingestion job {}", job.getId());
+        return job;
+    }
+
+    public Optional<IngestionJob> getJob(UUID id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public List<IngestionJob> getJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing(IngestionJob::getCreatedAt).reversed())
+                .toList();
+    }
+
+    @Scheduled(every = "${kamila.ingestion.retry-interval:10s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void retryDueItems() {
+        var now = Instant.now();
+        for (var iterator = retries.iterator(); iterator.hasNext(); ) {
+            var item = iterator.next();
+            if (item.nextAttemptAt.isAfter(now)) {
+                continue;
+            }
+            iterator.remove();
+            item.job.getRetrying().decrementAndGet();
+            log.info("Retrying {} at stage {} (attempt {})", item.url, item.stage, item.attempts + 1);
+            switch (item.stage) {
+                case FETCH -> fetchStage.execute(() -> fetch(item));
+                case DOWNLOAD -> downloadStage.execute(() -> download(item));
+                case WRITE -> write(item);
+                default -> throw new IllegalStateException("Stage " + item.stage + " is not retryable");
+            }
+        }
+    }
+
+    private void feed(IngestionJob job, ItemSource source, boolean refresh) {
+        job.start();
+        try {
+            source.feed(url -> {
+                job.getTotal().incrementAndGet();
+                var item = new Item(job, url, refresh);
+                fetchStage.execute(() -> fetch(item));
+            });
+            job.feedingDone();
+        } catch (Exception e) {
+            log.error("Ingestion job {} could not be fed", job.getId(), e);
+            job.fail(null, e.getMessage());
+        }
+    }
+
+    private void fetch(Item item) {
+        item.stage = Stage.FETCH;
+        var started = System.nanoTime();
+        FetchedPage page;
+        try {
+            item.previous = knowledgeService.findByHandle(DspacePageParser.handleFromUrl(item.url));
+            if (item.previous != null && !item.refresh) {
+                unchanged(item);
+                return;
+            }
+            page = withHostPermit(item.url, () -> knowledgeService.fetchPage(item.url, item.previous));
+        } catch (Exception e) {
+            retryOrFail(item, e);
+            return;
+        }
+        instrumentation.recordStage(Stage.FETCH, System.nanoTime() - started);
+        if (page == null) {
+            unchanged(item);
+            return;
+        }
+        item.job.getFetched().incrementAndGet();
+        parseStage.execute(() -> parse(item, page));
+    }
+
+    private void parse(Item item, FetchedPage page) {
+        item.stage = Stage.PARSE;
+        var started = System.nanoTime();
+        try {
+            item.metadata = page.metadata();
+            item.knowledge = knowledgeService.toEntity(page, item.previous);
+        } catch (Exception e) {
+            // The same page would fail the same way again, so parse errors are not retried.
+            giveUp(item, e);
+            return;
+        }
+        instrumentation.recordStage(Stage.PARSE, System.nanoTime() - started);
+        item.job.getParsed().incrementAndGet();
+        downloadStage.execute(() -> download(item));
+    }
+
+    private void download(Item item) {
+        item.stage = Stage.DOWNLOAD;
+        var started = System.nanoTime();
+        try {
+            var url = item.metadata.fileDownloadUrl() != null ? item.metadata.fileDownloadUrl() : item.url;
+            withHostPermit(url, () -> {
+                knowledgeService.downloadFile(item.knowledge, item.metadata, item.previous);
+                return null;
+            });
+        } catch (Exception e) {
+            retryOrFail(item, e);
+            return;
+        }
+        instrumentation.recordStage(Stage.DOWNLOAD, System.nanoTime() - started);
+        item.job.getDownloaded().incrementAndGet();
+        write(item);
+    }
+
+    private void write(Item item) {
+        item.stage = Stage.WRITE;
+        var started = System.nanoTime();
+        try {
+            batchWriter.submit(item.knowledge).whenComplete((knowledge, error) -> {
+                if (error != null) {
+                    retryOrFail(item, error);
+                    return;
+                }
+                // Includes the time spent waiting for the batch to fill up.
+                instrumentation.recordStage(Stage.WRITE, System.nanoTime() - started);
+                item.job.getWritten().incrementAndGet();
+                item.job.completeIfDone();
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            giveUp(item, e);
+        }
+    }
+
+    private void unchanged(Item item) {
+        log.debug("Skipping unchanged {}", item.url);
+        item.job.getUnchanged().incrementAndGet();
+        item.job.completeIfDone();
+    }
+
+    private void retryOrFail(Item item, Throwable e) {
+        item.attempts++;
+        // A missing or forbidden page stays that way, and so does a URL without a handle; the gateway does not retry
+        // them either.
+        if (item.attempts >= maxAttempts || e instanceof DspaceGateway.ClientErrorException || e instanceof IllegalArgumentException) {
+            giveUp(item, e);
+            return;
+        }
+        log.warn("Stage {} failed for {} (attempt {}), will retry: {}", item.stage, item.url, item.attempts, e.getMessage());
+        item.job.addError(new IngestionJob.ItemError(item.url, item.stage, item.attempts, e.getMessage(), Instant.now()));
+        item.nextAttemptAt = Instant.now().plus(retryBackoff.multipliedBy(1L << (item.attempts - 1)));
+        item.job.getRetrying().incrementAndGet();
+        retries.add(item);
+    }
+
+    private void giveUp(Item item, Throwable e) {
+        log.error("Giving up on {} at stage {}", item.url, item.stage, e);
+        item.job.addError(new IngestionJob.ItemError(item.url, item.stage, item.attempts, e.getMessage(), Instant.now()));
+        item.job.getFailed().incrementAndGet();
+        item.job.completeIfDone();
+    }
+
+    private <T> T withHostPermit(String url, Callable<T> request) throws Exception {
+        var permits = hostPermits.computeIfAbsent(host(url), host -> new Semaphore(perHostConcurrency, true));
+        permits.acquire();
+        try {
+            return request.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static String host(String url) {
+        try {
+            return Objects.toString(URI.create(url).getHost(), "");
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    private void evictFinishedJobs() {
+        var finished = new ArrayList<>(jobs.values().stream().filter(IngestionJob::isFinished).toList());
+        if (finished.size() < retainedJobs) {
+            return;
+        }
+        finished.sort(Comparator.comparing(IngestionJob::getFinishedAt));
+        finished.subList(0, finished.size() - retainedJobs + 1).forEach(job -> jobs.remove(job.getId()));
+    }
+
+    private ThreadPoolExecutor stage(String name, int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory(name), IngestionPipeline::blockUntilAccepted);
+    }
+
+    private static void blockUntilAccepted(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Ingestion pipeline is shutting down");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a free slot", e);
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        var counter = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Item {
+        private final IngestionJob job;
+        private final String url;
+        private final boolean refresh;
+        private volatile Stage stage = Stage.FETCH;
+        private volatile int attempts;
+        private volatile Instant nextAttemptAt;
+        private volatile DspaceMetadata metadata;
+        private volatile KnowledgeEntity previous;
+        private volatile KnowledgeEntity knowledge;
+
+        private Item(IngestionJob job, String url, boolean refresh) {
+            this.job = job;
+            this.url = url;
+            this.refresh = refresh;
+        }
+    }
+}
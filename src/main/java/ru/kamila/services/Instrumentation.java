@@ -0,0 +1,109 @@
+package ru.kamila.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.kamila.models.IngestionJob.Stage;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters for the hot paths, exported on {@code /q/metrics}:
+ * <ul>
+ *     <li>{@code kamila.neo4j.query} timer and {@code kamila.neo4j.query.rows} summary, tagged by query name;</li>
+ *     <li>{@code kamila.ingest.stage} timer, tagged by pipeline stage;</li>
+ *     <li>{@code kamila.files.downloaded} and {@code kamila.files.served} byte counters.</li>
+ * </ul>
+ * Queries slower than {@code kamila.metrics.slow-query-threshold} are also logged with their name and row count.
+ */
+@ApplicationScoped
+@Slf4j
+public class Instrumentation {
+    private static final String QUERY_TIMER = "kamila.neo4j.query";
+    private static final String QUERY_ROWS = "kamila.neo4j.query.rows";
+    private static final String STAGE_TIMER = "kamila.ingest.stage";
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "kamila.metrics.slow-query-threshold", defaultValue = "500ms")
+    Duration slowQueryThreshold;
+
+    private Counter downloadedBytes;
+    private Counter servedBytes;
+
+    @PostConstruct
+    void init() {
+        downloadedBytes = Counter.builder("kamila.files.downloaded")
+                .baseUnit("bytes")
+                .description("Bytes downloaded from the upstream repository")
+                .register(registry);
+        servedBytes = Counter.builder("kamila.files.served")
+                .baseUnit("bytes")
+                .description("Bytes of document files sent to clients")
+                .register(registry);
+    }
+
+    /**
+     * Times a query that returns rows. Failed queries are recorded with the {@code outcome=error} tag.
+     */
+    public <T extends Collection<?>> T query(String name, Supplier<T> query) {
+        var started = System.nanoTime();
+        try {
+            var rows = query.get();
+            recordQuery(name, System.nanoTime() - started, rows.size(), null);
+            return rows;
+        } catch (RuntimeException e) {
+            recordQuery(name, System.nanoTime() - started, 0, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Records a query whose execution was timed by the caller, e.g. an asynchronous one.
+     */
+    public void recordQuery(String name, long nanos, int rows, Throwable failure) {
+        Timer.builder(QUERY_TIMER)
+                .tag("query", name)
+                .tag("outcome", failure == null ? "success" : "error")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (failure == null) {
+            DistributionSummary.builder(QUERY_ROWS)
+                    .tag("query", name)
+                    .register(registry)
+                    .record(rows);
+        }
+        if (nanos >= slowQueryThreshold.toNanos()) {
+            log.warn("Slow query {}: {} ms, {} rows{}", name, TimeUnit.NANOSECONDS.toMillis(nanos), rows,
+                    failure == null ? "" : ", failed: " + failure.getMessage());
+        }
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        Timer.builder(STAGE_TIMER)
+                .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void bytesDownloaded(long bytes) {
+        downloadedBytes.increment(bytes);
+    }
+
+    public void bytesServed(long bytes) {
+        servedBytes.increment(bytes);
+    }
+}
@@ -0,0 +1,312 @@
+package ru.kamila.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.exceptions.TransientException;
+import ru.kamila.entities.KnowledgeEntity;
+import ru.kamila.models.BatchWriterStats;
+import ru.kamila.models.KnowledgeWrittenEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes {@code Knowledge} nodes and their authors in batches: one {@code UNWIND $rows} transaction per
+ * {@code kamila.batch-writer.size} records or per {@code kamila.batch-writer.flush-interval}, whichever comes first.
+ * <p>
+ * All authors of a batch are merged first, in name order, and the knowledge rows follow in handle order, then the
+ * rows without a handle in id order. Every transaction therefore takes its locks in the same global order, which
+ * keeps concurrent batches from deadlocking on shared {@code Author} nodes.
+ */
+@ApplicationScoped
+@Slf4j
+public class KnowledgeBatchWriter {
+    private static final String DEADLOCK_CODE = "Neo.TransientError.Transaction.DeadlockDetected";
+
+    private static final String MERGE_AUTHORS = """
+            UNWIND $authorNames AS authorName
+            MERGE (a:Author {name: authorName})
+            ON CREATE SET a.id = randomUUID()
+            RETURN a.id AS id
+            """;
+
+    private static final String SET_KNOWLEDGES = """
+            SET k.creationDate = row.creationDate,
+                k.issuerId = row.issuerId,
+                k.summary = row.summary,
+                k.title = row.title,
+                k.type = row.type,
+                k.fileHash = row.fileHash,
+                k.fileSize = row.fileSize,
+                k.authorNames = row.authorNames,
+                k += row.source
+            WITH k, row
+            CALL {
+              WITH k, row
+              OPTIONAL MATCH (k)-[stale:WRITTEN_BY]->(old:Author)
+              WHERE NOT old.name IN row.authors
+              DELETE stale
+              RETURN collect(old.id) AS unlinkedAuthorIds
+            }
+            CALL {
+              WITH k, row
+              UNWIND row.authors AS authorName
+              MATCH (a:Author {name: authorName})
+              MERGE (k)-[:WRITTEN_BY]->(a)
+            }
+            RETURN row.handle AS handle, k.id AS id, unlinkedAuthorIds
+            """;
+
+    // Documents are keyed by DSpace handle: a handle that is already stored keeps its id, and the returned ids
+    // tell the caller which one that is.
+    private static final String MERGE_KNOWLEDGES = """
+            UNWIND $rows AS row
+            MERGE (k:Knowledge {handle: row.handle})
+            ON CREATE SET k.id = row.id
+            """ + SET_KNOWLEDGES;
+
+    // Documents ingested before handles were stored have none, and only come back through a snapshot import.
+    private static final String MERGE_KNOWLEDGES_BY_ID = """
+            UNWIND $rows AS row
+            MERGE (k:Knowledge {id: row.id})
+            """ + SET_KNOWLEDGES;
+
+    @Inject
+    Driver driver;
+
+    @Inject
+    Event<KnowledgeWrittenEvent> knowledgeWritten;
+
+    @Inject
+    Instrumentation instrumentation;
+
+    @ConfigProperty(name = "kamila.batch-writer.size", defaultValue = "100")
+    int batchSize;
+
+    @ConfigProperty(name = "kamila.batch-writer.flush-interval", defaultValue = "200ms")
+    Duration flushInterval;
+
+    @ConfigProperty(name = "kamila.batch-writer.queue-capacity", defaultValue = "1000")
+    int queueCapacity;
+
+    @ConfigProperty(name = "kamila.batch-writer.max-retries", defaultValue = "5")
+    int maxRetries;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong deadlockRetries = new AtomicLong();
+    private final AtomicLong lastBatchSize = new AtomicLong();
+    private final AtomicLong lastLatencyMillis = new AtomicLong();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+
+    private BlockingQueue<Pending> queue;
+    private Thread flusher;
+    private volatile boolean running = true;
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        flusher = new Thread(this::flushLoop, "knowledge-batch-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        flusher.interrupt();
+    }
+
+    /**
+     * Queues a record for the next batch. Blocks while the queue is full, which pushes back on the producer.
+     */
+    public CompletableFuture<KnowledgeEntity> submit(KnowledgeEntity knowledge) throws InterruptedException {
+        var pending = new Pending(knowledge, new CompletableFuture<>());
+        queue.put(pending);
+        return pending.result;
+    }
+
+    /**
+     * Writes the records immediately in a single transaction on the calling thread.
+     */
+    public void write(List<KnowledgeEntity> knowledges) {
+        if (knowledges.isEmpty()) {
+            return;
+        }
+        var authorNames = new TreeSet<String>();
+        var rows = new ArrayList<Map<String, Object>>(knowledges.size());
+        var rowsById = new ArrayList<Map<String, Object>>();
+        var ordered = knowledges.stream()
+                .sorted(Comparator.comparing(KnowledgeEntity::getHandle, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(KnowledgeEntity::getId))
+                .toList();
+        for (var knowledge : ordered) {
+            authorNames.addAll(knowledge.getAuthors());
+            (knowledge.getHandle() == null ? rowsById : rows).add(toRow(knowledge));
+        }
+
+        var started = System.nanoTime();
+        var attempt = 0;
+        Set<String> authorIds = new HashSet<>();
+        Map<String, String> storedIds = new HashMap<>();
+        while (true) {
+            try (var session = driver.session(); var tx = session.beginTransaction()) {
+                authorIds.addAll(tx.run(MERGE_AUTHORS, Values.parameters("authorNames", List.copyOf(authorNames)))
+                        .list(record -> record.get("id").asString()));
+                tx.run(MERGE_KNOWLEDGES, Values.parameters("rows", rows)).forEachRemaining(record -> {
+                    storedIds.put(record.get("handle").asString(), record.get("id").asString());
+                    // Authors who lost a work on a refresh need their aggregates updated as well.
+                    authorIds.addAll(record.get("unlinkedAuthorIds").asList(Value::asString));
+                });
+                if (!rowsById.isEmpty()) {
+                    tx.run(MERGE_KNOWLEDGES_BY_ID, Values.parameters("rows", rowsById)).forEachRemaining(record ->
+                            authorIds.addAll(record.get("unlinkedAuthorIds").asList(Value::asString)));
+                }
+                tx.commit();
+                break;
+            } catch (TransientException e) {
+                if (++attempt > maxRetries) {
+                    failedBatches.incrementAndGet();
+                    throw e;
+                }
+                retries.incrementAndGet();
+                if (DEADLOCK_CODE.equals(e.code())) {
+                    deadlockRetries.incrementAndGet();
+                }
+                storedIds.clear();
+                authorIds.clear();
+                log.warn("Transient error writing batch of {} (attempt {}): {}", knowledges.size(), attempt, e.code());
+                backoff(attempt);
+            }
+        }
+        for (var knowledge : knowledges) {
+            if (knowledge.getHandle() != null) {
+                knowledge.setId(UUID.fromString(storedIds.get(knowledge.getHandle())));
+            }
+        }
+        var elapsed = System.nanoTime() - started;
+        instrumentation.recordQuery("knowledge-batch-write", elapsed, knowledges.size(), null);
+        record(knowledges.size(), TimeUnit.NANOSECONDS.toMillis(elapsed), attempt);
+        try {
+            knowledgeWritten.fire(new KnowledgeWrittenEvent(List.copyOf(knowledges), Set.copyOf(authorIds)));
+        } catch (Exception e) {
+            // The batch is already committed; a failing observer must not make callers retry it.
+            log.error("Observer of written knowledge batch failed", e);
+        }
+    }
+
+    public BatchWriterStats getStats() {
+        var batchCount = batches.get();
+        return new BatchWriterStats(
+                batchCount,
+                records.get(),
+                failedBatches.get(),
+                retries.get(),
+                deadlockRetries.get(),
+                lastBatchSize.get(),
+                lastLatencyMillis.get(),
+                maxLatencyMillis.get(),
+                batchCount == 0 ? 0 : (double) totalLatencyMillis.get() / batchCount,
+                queue.size());
+    }
+
+    private void flushLoop() {
+        var batch = new ArrayList<Pending>(batchSize);
+        while (running) {
+            try {
+                var first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                var deadline = System.nanoTime() + flushInterval.toNanos();
+                while (batch.size() < batchSize) {
+                    var next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        try {
+            write(batch.stream().map(Pending::knowledge).toList());
+            batch.forEach(pending -> pending.result.complete(pending.knowledge));
+        } catch (Exception e) {
+            log.error("Failed to write batch of {} knowledge records", batch.size(), e);
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+        }
+    }
+
+    private void record(int size, long latencyMillis, int retriesInBatch) {
+        batches.incrementAndGet();
+        records.addAndGet(size);
+        lastBatchSize.set(size);
+        lastLatencyMillis.set(latencyMillis);
+        totalLatencyMillis.addAndGet(latencyMillis);
+        maxLatencyMillis.accumulateAndGet(latencyMillis, Math::max);
+        log.info("Wrote batch of {} knowledge records in {} ms ({} retries)", size, latencyMillis, retriesInBatch);
+    }
+
+    private static Map<String, Object> toRow(KnowledgeEntity knowledge) {
+        var row = new HashMap<String, Object>();
+        row.put("id", knowledge.getId().toString());
+        row.put("handle", knowledge.getHandle());
+        row.put("creationDate", knowledge.getCreationDate());
+        row.put("issuerId", knowledge.getIssuerId());
+        row.put("summary", knowledge.getSummary());
+        row.put("title", knowledge.getTitle());
+        row.put("type", knowledge.getType());
+        row.put("fileHash", knowledge.getFileHash());
+        row.put("fileSize", knowledge.getFileSize());
+        row.put("authorNames", String.join(" ", knowledge.getAuthors()));
+        row.put("authors", knowledge.getAuthors());
+        row.put("source", knowledge.getSource() == null ? Map.of() : knowledge.getSource().toProperties());
+        return row;
+    }
+
+    private static void backoff(int attempt) {
+        try {
+            Thread.sleep(Math.min(1000L, 50L << attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying batch write", e);
+        }
+    }
+
+    private record Pending(KnowledgeEntity knowledge, CompletableFuture<KnowledgeEntity> result) {
+    }
+}
@@ -0,0 +1,46 @@
+package ru.kamila.services;
+
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CompositeCacheKey;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import lombok.extern.slf4j.Slf4j;
+import ru.kamila.entities.KnowledgeEntity;
+import ru.kamila.models.KnowledgeWrittenEvent;
+
+import java.util.HashSet;
+
+/**
+ * Drops exactly the cached reads a committed write can change: the written nodes themselves, the pages of their
+ * authors and the first listing pages. Recommendations are invalidated by {@link RecommendationIndex} once the
+ * neighbour lists have been updated.
+ */
+@ApplicationScoped
+@Slf4j
+public class KnowledgeCacheInvalidator {
+
+    @CacheName(KnowledgeService.KNOWLEDGE_BY_ID_CACHE)
+    Cache knowledgeById;
+
+    @CacheName(KnowledgeService.KNOWLEDGE_BY_AUTHOR_CACHE)
+    Cache knowledgeByAuthor;
+
+    @CacheName(KnowledgeService.FIRST_LISTING_PAGES_CACHE)
+    Cache firstListingPages;
+
+    void onKnowledgeWritten(@Observes KnowledgeWrittenEvent event) {
+        var knowledgeIds = new HashSet<String>();
+        for (KnowledgeEntity knowledge : event.knowledges()) {
+            knowledgeIds.add(knowledge.getId().toString());
+        }
+        knowledgeIds.forEach(id -> knowledgeById.invalidate(id).await().indefinitely());
+        knowledgeByAuthor.invalidateIf(key -> event.authorIds().contains(firstKeyElement(key))).await().indefinitely();
+        firstListingPages.invalidateAll().await().indefinitely();
+        log.debug("Invalidated caches for {} written knowledge records", knowledgeIds.size());
+    }
+
+    private static Object firstKeyElement(Object key) {
+        return key instanceof CompositeCacheKey composite ? composite.getKeyElements()[0] : key;
+    }
+}
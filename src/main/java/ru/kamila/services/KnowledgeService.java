@@ -1,236 +1,522 @@
 package ru.kamila.services;
 
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CacheResult;
+import io.quarkus.cache.CompositeCacheKey;
+import io.quarkus.runtime.configuration.MemorySize;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.eclipse.microprofile.rest.client.inject.RestClient;
-import org.jsoup.Jsoup;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.neo4j.driver.Driver;
+import org.neo4j.driver.Query;
 import org.neo4j.driver.Record;
 import org.neo4j.driver.Value;
 import org.neo4j.driver.Values;
-import ru.kamila.clients.KpfuClient;
 import ru.kamila.entities.KnowledgeEntity;
+import ru.kamila.models.DspaceMetadata;
+import ru.kamila.models.FacetCounts;
+import ru.kamila.models.FetchedPage;
+import ru.kamila.models.IngestionJob.Stage;
+import ru.kamila.models.KnowledgeFilter;
+import ru.kamila.models.KnowledgeIngestResult;
+import ru.kamila.models.KnowledgePage;
 import ru.kamila.models.KnowledgeRequest;
+import ru.kamila.models.KnowledgeSource;
+import ru.kamila.models.PageCursor;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @ApplicationScoped
 @Slf4j
 public class KnowledgeService {
-    private static final String FULL_QUERY = "?show=full";
+    public static final String KNOWLEDGE_BY_ID_CACHE = "knowledge-by-id";
+    public static final String KNOWLEDGE_BY_AUTHOR_CACHE = "knowledge-by-author";
+    public static final String FIRST_LISTING_PAGES_CACHE = "knowledge-first-pages";
+    public static final String RECOMMENDATIONS_CACHE = "knowledge-recommendations";
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    static final String FIRST_PAGE = "page";
+    static final String FIRST_CURSOR_PAGE = "cursor";
+    private static final int COLLECTION_PAGE_SIZE = 100;
 
-    @RestClient
-    KpfuClient kpfuClient;
+    // Body-text hits are folded into their document at a reduced weight, so metadata matches still rank first.
+    private static final String SEARCH_HITS = """
+            CALL {
+              CALL db.index.fulltext.queryNodes("knowledge_search_index", $searchText) YIELD node AS k, score
+              RETURN k, score
+              UNION ALL
+              CALL db.index.fulltext.queryNodes("passage_search_index", $searchText) YIELD node AS p, score
+              MATCH (k:Knowledge)-[:HAS_PASSAGE]->(p)
+              RETURN k, score * $passageWeight AS score
+            }
+            WITH k, max(score) AS score
+            """;
+
+    // Pages are cut before authors are collected, and the (sortKey, id) order is unique, so keyset cursors are
+    // stable while new documents are ingested. Pattern comprehensions keep the row order intact.
+    private static final String SEARCH = SEARCH_HITS + """
+            %s
+            WITH k, score
+            ORDER BY score DESC, k.id ASC
+            SKIP $skip LIMIT $limit
+            RETURN k, [(k)-[:WRITTEN_BY]->(a:Author) | a.name] AS authors, score
+            """;
+
+    private static final String SEARCH_IDS = SEARCH_HITS + """
+            ORDER BY score DESC
+            LIMIT $limit
+            RETURN k.id AS id
+            """;
+
+    static final String LIST_ALL = """
+            MATCH (k:Knowledge)
+            WHERE k.creationDate IS NOT NULL %s
+            WITH k
+            ORDER BY k.creationDate DESC, k.id ASC
+            SKIP $skip LIMIT $limit
+            RETURN k, [(k)-[:WRITTEN_BY]->(a:Author) | a.name] AS authors
+            """;
+
+    static final String LIST_BY_AUTHOR = """
+            MATCH (:Author {id: $authorId})<-[:WRITTEN_BY]-(k:Knowledge)
+            WHERE k.creationDate IS NOT NULL %s
+            WITH k
+            ORDER BY k.creationDate DESC, k.id ASC
+            SKIP $skip LIMIT $limit
+            RETURN k, [(k)-[:WRITTEN_BY]->(a:Author) | a.name] AS authors
+            """;
+    @Inject
+    DspaceGateway dspaceGateway;
 
     @Inject
     Driver driver;
 
-    public KnowledgeEntity createKnowledge(KnowledgeRequest knowledgeRequest) throws IOException {
+    @Inject
+    BlobStore blobStore;
+
+    @Inject
+    KnowledgeBatchWriter batchWriter;
+
+    @Inject
+    Instrumentation instrumentation;
+
+    @Inject
+    FacetIndex facetIndex;
+
+    @CacheName(FIRST_LISTING_PAGES_CACHE)
+    Cache firstListingPages;
+
+    @ConfigProperty(name = "kamila.ingest.max-file-size", defaultValue = "200M")
+    MemorySize maxFileSize;
+
+    @ConfigProperty(name = "kamila.ingestion.max-collection-items", defaultValue = "10000")
+    int maxCollectionItems;
+
+    @ConfigProperty(name = "kamila.facets.max-search-hits", defaultValue = "10000")
+    int maxFacetSearchHits;
+
+    @ConfigProperty(name = "kamila.search.passage-weight", defaultValue = "0.5")
+    double passageWeight;
+
+    /**
+     * Ingests one DSpace item, keyed by its handle. A known handle is returned as is unless {@code refresh} is set;
+     * a refresh re-fetches the page and the file only when their validators or content hashes have changed.
+     */
+    public KnowledgeIngestResult createKnowledge(KnowledgeRequest knowledgeRequest) throws IOException {
         log.info("Starting to create knowledge from URL: {}", knowledgeRequest.url());
-        var idFromUrl = StringUtils.substringAfterLast(knowledgeRequest.url(), "/");
-
-        var doc = Jsoup.connect(knowledgeRequest.url() + FULL_QUERY).get();
-
-        var authors = new ArrayList<String>();
-        int creationDate = 0;
-        var issuerId = "";
-        var summary = "";
-        var title = "";
-        var type = "";
-        String fileDownloadUrl = null;
-
-        for (var meta : doc.select("meta")) {
-            var name = meta.attr("name");
-            var content = meta.attr("content");
-            switch (name) {
-                case "DC.creator" -> authors.add(content);
-                case "citation_date" -> creationDate = Integer.parseInt(content);
-                case "citation_issn" -> issuerId = content;
-                case "DCTERMS.abstract" -> summary = content;
-                case "DC.title" -> title = content;
-                case "DC.type" -> type = content;
+        var previous = findByHandle(DspacePageParser.handleFromUrl(knowledgeRequest.url()));
+        if (previous != null && !knowledgeRequest.refresh()) {
+            return new KnowledgeIngestResult(previous, KnowledgeIngestResult.Outcome.UNCHANGED);
+        }
+        var started = System.nanoTime();
+        var page = fetchPage(knowledgeRequest.url(), previous);
+        started = stageDone(Stage.FETCH, started);
+        if (page == null) {
+            log.info("Page of knowledge {} is not modified", previous.getId());
+            return new KnowledgeIngestResult(previous, KnowledgeIngestResult.Outcome.UNCHANGED);
+        }
+        var knowledge = toEntity(page, previous);
+        started = stageDone(Stage.PARSE, started);
+        downloadFile(knowledge, page.metadata(), previous);
+        started = stageDone(Stage.DOWNLOAD, started);
+        saveKnowledge(knowledge);
+        stageDone(Stage.WRITE, started);
+        log.info("Successfully saved knowledge node with ID: {}", knowledge.getId());
+        return new KnowledgeIngestResult(knowledge, previous == null
+                ? KnowledgeIngestResult.Outcome.CREATED
+                : KnowledgeIngestResult.Outcome.UPDATED);
+    }
+
+    /**
+     * Looks up an already ingested document by DSpace handle, including its stored source validators.
+     */
+    public KnowledgeEntity findByHandle(String handle) {
+        var records = read("knowledge-by-handle", new Query("""
+                MATCH (k:Knowledge {handle: $handle})
+                RETURN k, [(k)-[:WRITTEN_BY]->(a:Author) | a.name] AS authors
+                """, Values.parameters("handle", handle)));
+        if (records.isEmpty()) {
+            return null;
+        }
+        var knowledge = recordToKnowledgeEntity(records.get(0));
+        knowledge.setSource(KnowledgeSource.from(records.get(0).get("k").asNode()));
+        return knowledge;
+    }
+
+    /**
+     * Builds the entity for a fetched page, keeping the id of the previously ingested document if there is one.
+     */
+    public KnowledgeEntity toEntity(FetchedPage page, KnowledgeEntity previous) {
+        var metadata = page.metadata();
+        var knowledge = metadata.toEntity(previous != null ? previous.getId() : UUID.randomUUID());
+        knowledge.setSource(new KnowledgeSource(page.etag(), page.lastModified(), page.hash(), metadata.fileDownloadUrl(), null, null));
+        return knowledge;
+    }
+
+    private long stageDone(Stage stage, long startedNanos) {
+        var now = System.nanoTime();
+        instrumentation.recordStage(stage, now - startedNanos);
+        return now;
+    }
+
+    /**
+     * Fetches an item page and scrapes its metadata while it downloads; the rest of the page is not read once the
+     * metadata is complete. With a previously ingested document the request is conditional, and {@code null} is
+     * returned when the server answers {@code 304 Not Modified} or the metadata hashes to the stored value.
+     */
+    public FetchedPage fetchPage(String itemUrl, KnowledgeEntity previous) throws IOException {
+        var url = itemUrl + DspacePageParser.FULL_QUERY;
+        var headers = new HashMap<String, String>();
+        var source = previous != null ? previous.getSource() : null;
+        if (source != null && source.pageEtag() != null) {
+            headers.put(IF_NONE_MATCH, source.pageEtag());
+        }
+        if (source != null && source.pageLastModified() != null) {
+            headers.put(IF_MODIFIED_SINCE, source.pageLastModified());
+        }
+        return dspaceGateway.fetchPage(url, headers, response -> {
+            if (response.statusCode() == 304 && previous != null) {
+                return null;
+            }
+            DspaceMetadata metadata;
+            try (var parser = response.streamParser()) {
+                metadata = DspacePageParser.parse(parser, itemUrl);
             }
+            var hash = metadataHash(metadata);
+            if (source != null && hash.equals(source.pageHash())) {
+                return null;
+            }
+            return new FetchedPage(metadata, response.header(ETAG), response.header(LAST_MODIFIED), hash);
+        });
+    }
+
+    /**
+     * SHA-256 over the scraped fields. The page itself is not read to the end, and its body changes with every
+     * rendering of the XMLUI chrome anyway, so the metadata is what a refresh compares.
+     */
+    private static String metadataHash(DspaceMetadata metadata) {
+        var digest = BlobStore.sha256();
+        var fields = new ArrayList<String>(metadata.authors());
+        fields.addAll(Arrays.asList(String.valueOf(metadata.creationDate()), metadata.issuerId(), metadata.summary(),
+                metadata.title(), metadata.type(), Objects.toString(metadata.fileDownloadUrl(), "")));
+        for (var field : fields) {
+            digest.update(field.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
         }
+        return HexFormat.of().formatHex(digest.digest());
+    }
 
-        for (var a : doc.select("a[href]")) {
-            if (a.attr("href").contains("file")) {
-                fileDownloadUrl = "https://dspace.kpfu.ru" + a.attr("href")
-                        .replace("viewer?file=27232;", "bitstream/handle/net/" + idFromUrl + "/")
-                        .replace("&", "?");
+    /**
+     * Walks the date-ordered browse listing of a DSpace collection and collects its item URLs.
+     */
+    public List<String> listCollectionItems(String collectionUrl) throws IOException {
+        var items = new LinkedHashSet<String>();
+        var base = StringUtils.removeEnd(collectionUrl, "/");
+        while (items.size() < maxCollectionItems) {
+            var page = dspaceGateway.fetchDocument(base + "/browse?type=dateissued&rpp=" + COLLECTION_PAGE_SIZE + "&offset=" + items.size());
+            var before = items.size();
+            items.addAll(DspacePageParser.parseItemLinks(page));
+            if (items.size() == before) {
                 break;
             }
         }
+        log.info("Found {} items in collection {}", items.size(), collectionUrl);
+        return items.stream().limit(maxCollectionItems).toList();
+    }
 
-        byte[] fileBytes = null;
-        if (fileDownloadUrl != null) {
-            log.info("Downloading file from: {}", fileDownloadUrl);
-            fileBytes = kpfuClient.downloadFile(fileDownloadUrl);
-        } else {
-            log.warn("Could not find a downloadable file link on page: {}", knowledgeRequest.url());
-        }
-
-        var knowledgeId = UUID.randomUUID();
-        var knowledge = new KnowledgeEntity(knowledgeId, authors, creationDate, issuerId, summary, title, type, fileBytes);
-
-        var authorNamesString = String.join(" ", authors);
-
-        try (var session = driver.session()) {
-            var cypher = """
-                    MERGE (k:Knowledge {id: $id})
-                    SET k.creationDate = $creationDate,
-                        k.issuerId = $issuerId,
-                        k.summary = $summary,
-                        k.title = $title,
-                        k.type = $type,
-                        k.file = $file,
-                        k.authorNames = $authorNames
-                    WITH k
-                    UNWIND $authors as authorName
-                    MERGE (a:Author {name: authorName})
-                    ON CREATE SET a.id = randomUUID()
-                    MERGE (k)-[:WRITTEN_BY]->(a)
-                    RETURN k
-                    """;
-            session.executeWrite(tx -> {
-                tx.run(cypher, Values.parameters(
-                        "id", knowledge.getId().toString(),
-                        "creationDate", knowledge.getCreationDate(),
-                        "issuerId", knowledge.getIssuerId(),
-                        "summary", knowledge.getSummary(),
-                        "title", knowledge.getTitle(),
-                        "type", knowledge.getType(),
-                        "file", knowledge.getFile(),
-                        "authorNames", authorNamesString,
-                        "authors", knowledge.getAuthors()
-                ));
-                return null;
-            });
+    /**
+     * Downloads the item's file into the blob store. The file's validators are checked with a {@code HEAD} request
+     * first; if they match those stored for the previously ingested document, its blob is reused.
+     */
+    public void downloadFile(KnowledgeEntity knowledge, DspaceMetadata metadata, KnowledgeEntity previous) throws IOException {
+        if (metadata.fileDownloadUrl() == null) {
+            log.warn("Could not find a downloadable file link for handle: {}", metadata.handle());
+            return;
         }
-        log.info("Successfully created knowledge node with ID: {}", knowledge.getId());
-        knowledge.setFile(null);
-        return knowledge;
+        String etag = null;
+        String lastModified = null;
+        try (var head = dspaceGateway.fileHead(metadata.fileDownloadUrl())) {
+            etag = head.getHeaderString(ETAG);
+            lastModified = head.getHeaderString(LAST_MODIFIED);
+        } catch (Exception e) {
+            log.debug("HEAD of {} failed, downloading unconditionally: {}", metadata.fileDownloadUrl(), e.getMessage());
+        }
+        var source = knowledge.getSource() != null ? knowledge.getSource() : new KnowledgeSource(null, null, null, null, null, null);
+        knowledge.setSource(source.withFile(metadata.fileDownloadUrl(), etag, lastModified));
+        if (isFileUnchanged(previous, metadata.fileDownloadUrl(), etag, lastModified)) {
+            log.info("File of knowledge {} is not modified, keeping blob {}", previous.getId(), previous.getFileHash());
+            knowledge.setFileHash(previous.getFileHash());
+            knowledge.setFileSize(previous.getFileSize());
+            return;
+        }
+        log.info("Downloading file from: {}", metadata.fileDownloadUrl());
+        var blob = dspaceGateway.downloadFile(metadata.fileDownloadUrl(), maxFileSize.asLongValue());
+        instrumentation.bytesDownloaded(blob.size());
+        knowledge.setFileHash(blob.hash());
+        knowledge.setFileSize(blob.size());
+    }
+
+    private boolean isFileUnchanged(KnowledgeEntity previous, String fileUrl, String etag, String lastModified) {
+        if (previous == null || previous.getSource() == null || previous.getFileHash() == null
+                || !fileUrl.equals(previous.getSource().fileUrl()) || !blobStore.exists(previous.getFileHash())) {
+            return false;
+        }
+        var source = previous.getSource();
+        if (etag != null && source.fileEtag() != null) {
+            return etag.equals(source.fileEtag());
+        }
+        return lastModified != null && lastModified.equals(source.fileLastModified());
+    }
+
+    public void saveKnowledge(KnowledgeEntity knowledge) {
+        batchWriter.write(List.of(knowledge));
     }
 
+    @CacheResult(cacheName = KNOWLEDGE_BY_ID_CACHE)
     public KnowledgeEntity getKnowledge(String id) {
-        try (var session = driver.session()) {
-            var cypher = """
-                    MATCH (k:Knowledge {id: $id})
-                    OPTIONAL MATCH (k)-[:WRITTEN_BY]->(a:Author)
-                    RETURN k, collect(a.name) as authors
-                    """;
-            var record = session.executeRead(tx -> {
-                var result = tx.run(cypher, Values.parameters("id", id));
-                return result.hasNext() ? result.single() : null;
-            });
-            return record != null ? recordToKnowledgeEntity(record) : null;
-        }
-    }
-
-    public byte[] getKnowledgeFile(String id) {
-        try (var session = driver.session()) {
-            var cypher = "MATCH (k:Knowledge {id: $id}) RETURN k.file as file";
-            return session.executeRead(tx -> {
-                var result = tx.run(cypher, Values.parameters("id", id));
-                if (result.hasNext()) {
-                    Value fileValue = result.single().get("file");
-                    return fileValue.isNull() ? null : fileValue.asByteArray();
-                }
-                return null;
-            });
+        var records = read("knowledge-by-id", knowledgeQuery(id));
+        return records.isEmpty() ? null : recordToKnowledgeEntity(records.get(0));
+    }
+
+    public BlobStore.Blob getKnowledgeFile(String id) {
+        var records = read("knowledge-file", new Query(
+                "MATCH (k:Knowledge {id: $id}) RETURN k.fileHash as fileHash, k.fileSize as fileSize", Values.parameters("id", id)));
+        if (records.isEmpty() || records.get(0).get("fileHash").isNull()) {
+            return null;
+        }
+        var record = records.get(0);
+        var blob = new BlobStore.Blob(record.get("fileHash").asString(), record.get("fileSize").asLong(0));
+        if (!blobStore.exists(blob.hash())) {
+            log.warn("Blob {} referenced by knowledge {} is missing from the blob store", blob.hash(), id);
+            return null;
+        }
+        return blob;
+    }
+
+    public List<KnowledgeEntity> searchKnowledges(String searchText, KnowledgeFilter filter, int page, int size) {
+        return recordsToKnowledgeEntityList(read("search", searchQuery(searchText, filter, null, page * size, size)));
+    }
+
+    public KnowledgePage searchKnowledges(String searchText, KnowledgeFilter filter, String cursor, int size) {
+        var records = read("search", searchQuery(searchText, filter, PageCursor.decode(cursor), 0, size + 1));
+        return toPage(records, size, KnowledgeService::scoreCursor);
+    }
+
+    /**
+     * Lists documents newest first. Only unfiltered first pages are cached.
+     */
+    public List<KnowledgeEntity> getAllKnowledges(KnowledgeFilter filter, int page, int size) {
+        if (page == 0 && filter.isEmpty()) {
+            return firstListingPages.get(new CompositeCacheKey(FIRST_PAGE, size),
+                    key -> recordsToKnowledgeEntityList(read("list-all", listingQuery(LIST_ALL, Values.parameters(), filter, null, 0, size)))).await().indefinitely();
+        }
+        return recordsToKnowledgeEntityList(read("list-all", listingQuery(LIST_ALL, Values.parameters(), filter, null, page * size, size)));
+    }
+
+    public KnowledgePage getAllKnowledges(KnowledgeFilter filter, String cursor, int size) {
+        var after = PageCursor.decode(cursor);
+        if (after == null && filter.isEmpty()) {
+            return firstListingPages.get(new CompositeCacheKey(FIRST_CURSOR_PAGE, size),
+                    key -> toPage(read("list-all", listingQuery(LIST_ALL, Values.parameters(), filter, null, 0, size + 1)), size, KnowledgeService::creationDateCursor))
+                    .await().indefinitely();
         }
+        var records = read("list-all", listingQuery(LIST_ALL, Values.parameters(), filter, after, 0, size + 1));
+        return toPage(records, size, KnowledgeService::creationDateCursor);
     }
 
-    public List<KnowledgeEntity> searchKnowledges(String searchText, int page, int size) {
-        var skip = page * size;
+    /**
+     * Counts hits per year, type and issuer for a listing or search from the in-memory {@link FacetIndex}. A search
+     * costs one query for the ids of its best {@code kamila.facets.max-search-hits} hits; a plain listing none.
+     *
+     * @return the counts, or {@code null} while the facet index is still being built
+     */
+    public FacetCounts getFacets(String searchText, KnowledgeFilter filter) {
+        if (searchText == null || searchText.isBlank()) {
+            return facetIndex.count(null, filter);
+        }
+        var ids = read("search-ids", searchIdsQuery(searchText)).stream().map(record -> record.get("id").asString()).toList();
+        return facetIndex.count(facetIndex.ordinalsOf(ids), filter);
+    }
+
+    @CacheResult(cacheName = KNOWLEDGE_BY_AUTHOR_CACHE)
+    public List<KnowledgeEntity> getKnowledgesByAuthor(String authorId, int page, int size) {
+        return recordsToKnowledgeEntityList(read("list-by-author", listingQuery(LIST_BY_AUTHOR, Values.parameters("authorId", authorId), KnowledgeFilter.NONE, null, page * size, size)));
+    }
 
-        var enhancedQuery = Arrays.stream(searchText.trim().split("\\s+"))
+    @CacheResult(cacheName = KNOWLEDGE_BY_AUTHOR_CACHE)
+    public KnowledgePage getKnowledgesByAuthor(String authorId, String cursor, int size) {
+        var records = read("list-by-author", listingQuery(LIST_BY_AUTHOR, Values.parameters("authorId", authorId), KnowledgeFilter.NONE, PageCursor.decode(cursor), 0, size + 1));
+        return toPage(records, size, KnowledgeService::creationDateCursor);
+    }
+
+    /**
+     * Rewrites free text into a Lucene query that matches every term either as a prefix or with one typo.
+     */
+    public static String toFulltextQuery(String searchText) {
+        return Arrays.stream(searchText.trim().split("\\s+"))
                 .filter(term -> !term.isEmpty())
                 .map(term -> "(" + term + "* OR " + term + "~1)")
                 .collect(Collectors.joining(" AND "));
+    }
 
+    static Query knowledgeQuery(String id) {
+        return new Query("""
+                MATCH (k:Knowledge {id: $id})
+                OPTIONAL MATCH (k)-[:WRITTEN_BY]->(a:Author)
+                RETURN k, collect(a.name) as authors
+                """, Values.parameters("id", id));
+    }
+
+    Query searchQuery(String searchText, KnowledgeFilter filter, PageCursor after, int skip, int limit) {
+        var enhancedQuery = toFulltextQuery(searchText);
         log.info("Executing enhanced search with query: {}", enhancedQuery);
 
-        try (var session = driver.session()) {
-            var cypher = """
-                    CALL db.index.fulltext.queryNodes("knowledge_search_index", $searchText) YIELD node, score
-                    MATCH (node)-[:WRITTEN_BY]->(a:Author)
-                    WITH node AS k, score, collect(a.name) as authors
-                    RETURN k, authors, score
-                    ORDER BY score DESC
-                    SKIP $skip LIMIT $limit
-                    """;
-            var result = session.executeRead(tx ->
-                    tx.run(cypher, Values.parameters("searchText", enhancedQuery, "skip", skip, "limit", size)).list());
-            return recordsToKnowledgeEntityList(result);
-        }
-    }
-
-    public List<KnowledgeEntity> getAllKnowledges(int page, int size) {
-        var skip = page * size;
-        try (var session = driver.session()) {
-            var cypher = """
-                    MATCH (k:Knowledge)
-                    OPTIONAL MATCH (k)-[:WRITTEN_BY]->(a:Author)
-                    WITH k, collect(a.name) as authors
-                    RETURN k, authors
-                    ORDER BY k.creationDate DESC
-                    SKIP $skip LIMIT $limit
-                    """;
-            var result = session.executeRead(tx ->
-                    tx.run(cypher, Values.parameters("skip", skip, "limit", size)).list());
-            return recordsToKnowledgeEntityList(result);
+        var conditions = filterConditions(filter);
+        if (after != null) {
+            conditions.add("score <= $afterKey AND (score < $afterKey OR k.id > $afterId)");
+        }
+        var cypher = SEARCH.formatted(conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions));
+        var parameters = new HashMap<String, Object>();
+        parameters.put("searchText", enhancedQuery);
+        parameters.put("passageWeight", passageWeight);
+        parameters.put("skip", skip);
+        parameters.put("limit", limit);
+        putFilterParameters(parameters, filter);
+        if (after != null) {
+            parameters.put("afterKey", after.doubleKey());
+            parameters.put("afterId", after.id());
         }
+        return new Query(cypher, parameters);
     }
 
-    public List<KnowledgeEntity> getKnowledgesByAuthor(String authorId, int page, int size) {
-        var skip = page * size;
-        try (var session = driver.session()) {
-            var cypher = """
-                    MATCH (a:Author {id: $authorId})<-[:WRITTEN_BY]-(k:Knowledge)
-                    OPTIONAL MATCH (k)-[:WRITTEN_BY]->(other:Author)
-                    WITH k, collect(other.name) as authors
-                    RETURN k, authors
-                    ORDER BY k.creationDate DESC
-                    SKIP $skip LIMIT $limit
-                    """;
-            var result = session.executeRead(tx ->
-                    tx.run(cypher, Values.parameters("authorId", authorId, "skip", skip, "limit", size)).list());
-            return recordsToKnowledgeEntityList(result);
+    Query searchIdsQuery(String searchText) {
+        return new Query(SEARCH_IDS, Values.parameters(
+                "searchText", toFulltextQuery(searchText),
+                "passageWeight", passageWeight,
+                "limit", maxFacetSearchHits));
+    }
+
+    static Query listingQuery(String template, Value baseParameters, KnowledgeFilter filter, PageCursor after, int skip, int limit) {
+        var conditions = filterConditions(filter);
+        if (after != null) {
+            conditions.add("k.creationDate <= $afterKey AND (k.creationDate < $afterKey OR k.id > $afterId)");
+        }
+        var cypher = template.formatted(conditions.stream().map(condition -> "AND " + condition).collect(Collectors.joining(" ")));
+        var parameters = new HashMap<>(baseParameters.asMap());
+        parameters.put("skip", skip);
+        parameters.put("limit", limit);
+        putFilterParameters(parameters, filter);
+        if (after != null) {
+            parameters.put("afterKey", after.intKey());
+            parameters.put("afterId", after.id());
+        }
+        return new Query(cypher, parameters);
+    }
+
+    private static List<String> filterConditions(KnowledgeFilter filter) {
+        var conditions = new ArrayList<String>();
+        if (!filter.years().isEmpty()) {
+            conditions.add("k.creationDate IN $years");
         }
+        if (!filter.types().isEmpty()) {
+            conditions.add("k.type IN $types");
+        }
+        if (!filter.issuers().isEmpty()) {
+            conditions.add("k.issuerId IN $issuers");
+        }
+        return conditions;
+    }
+
+    private static void putFilterParameters(Map<String, Object> parameters, KnowledgeFilter filter) {
+        parameters.put("years", filter.years());
+        parameters.put("types", filter.types());
+        parameters.put("issuers", filter.issuers());
+    }
+
+    static Query recommendationsQuery(String knowledgeId, int limit) {
+        return new Query("""
+                MATCH (:Knowledge {id: $knowledgeId})-[s:SIMILAR]->(k:Knowledge)
+                WITH k, s
+                ORDER BY s.weight DESC, k.id ASC
+                LIMIT $limit
+                RETURN k, [(k)-[:WRITTEN_BY]->(a:Author) | a.name] AS authors
+                """, Values.parameters("knowledgeId", knowledgeId, "limit", limit));
     }
 
+    private List<Record> read(String name, Query query) {
+        return instrumentation.query(name, () -> {
+            try (var session = driver.session()) {
+                return session.executeRead(tx -> tx.run(query).list());
+            }
+        });
+    }
+
+    static KnowledgePage toPage(List<Record> records, int size, Function<Record, String> cursorOf) {
+        if (records.size() <= size) {
+            return new KnowledgePage(recordsToKnowledgeEntityList(records), null);
+        }
+        var page = records.subList(0, size);
+        return new KnowledgePage(recordsToKnowledgeEntityList(page), cursorOf.apply(page.get(size - 1)));
+    }
+
+    static String creationDateCursor(Record record) {
+        var node = record.get("k").asNode();
+        return PageCursor.encode(node.get("creationDate").asInt(), node.get("id").asString());
+    }
+
+    static String scoreCursor(Record record) {
+        return PageCursor.encode(record.get("score").asDouble(), record.get("k").asNode().get("id").asString());
+    }
+
+    @CacheResult(cacheName = RECOMMENDATIONS_CACHE)
     public List<KnowledgeEntity> getAuthorBasedRecommendations(String knowledgeId, int limit) {
-        try (var session = driver.session()) {
-            var cypher = """
-                    MATCH (source:Knowledge {id: $knowledgeId})-[:WRITTEN_BY]->(a:Author)
-                    MATCH (rec:Knowledge)-[:WRITTEN_BY]->(a)
-                    WHERE source <> rec
-                    WITH rec, count(a) AS sharedAuthors
-                    OPTIONAL MATCH (rec)-[:WRITTEN_BY]->(allAuthors:Author)
-                    WITH rec, sharedAuthors, collect(allAuthors.name) AS authors
-                    RETURN rec AS k, authors, sharedAuthors
-                    ORDER BY sharedAuthors DESC
-                    LIMIT $limit
-                    """;
-            var result = session.executeRead(tx -> tx.run(cypher, Values.parameters("knowledgeId", knowledgeId, "limit", limit)).list());
-            return recordsToKnowledgeEntityList(result);
-        }
-    }
-
-    private List<KnowledgeEntity> recordsToKnowledgeEntityList(List<Record> records) {
+        return recordsToKnowledgeEntityList(read("recommendations", recommendationsQuery(knowledgeId, limit)));
+    }
+
+    static List<KnowledgeEntity> recordsToKnowledgeEntityList(List<Record> records) {
         return records.stream()
-                .map(this::recordToKnowledgeEntity)
+                .map(KnowledgeService::recordToKnowledgeEntity)
                 .collect(Collectors.toList());
     }
 
-    private KnowledgeEntity recordToKnowledgeEntity(Record record) {
+    static KnowledgeEntity recordToKnowledgeEntity(Record record) {
         var kNode = record.get("k").asNode();
         var authors = record.get("authors").asList(Value::asString);
         return KnowledgeEntity.from(kNode, authors);
@@ -0,0 +1,351 @@
+package ru.kamila.services;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.HttpHeaders;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Values;
+import ru.kamila.models.HarvestStatus;
+import ru.kamila.models.IngestionJob;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Incremental harvest of a DSpace repository over OAI-PMH. {@code ListRecords} is paged through with resumption
+ * tokens, and the records of each page that are not deleted are handed to the {@link IngestionPipeline} as item URLs
+ * before the next page is requested, so a full harvest holds one page of the listing at a time and is throttled by
+ * the pipeline like any other job.
+ * <p>
+ * The latest record datestamp is stored as the watermark in a {@code :HarvestState} node once the ingestion job of
+ * the harvest has finished, and becomes the {@code from} of the next harvest. Items are ingested in refresh mode, so
+ * records re-listed because {@code from} is inclusive cost one conditional request. A harvest whose listing failed,
+ * or in which any item failed to ingest, keeps the previous watermark, so the next run lists the same records again
+ * and retries the failed ones.
+ * <p>
+ * Requests answered with {@code 503 Service Unavailable}, the OAI-PMH flow control, are repeated after the delay the
+ * repository asks for in {@code Retry-After}. Requests rejected by the open circuit of {@link DspaceGateway#oai} are
+ * repeated after {@code kamila.harvest.retry-backoff}.
+ */
+@ApplicationScoped
+@Slf4j
+public class OaiHarvester {
+    private static final String DAY_GRANULARITY = "YYYY-MM-DD";
+    private static final String NO_RECORDS_MATCH = "noRecordsMatch";
+    private static final XMLInputFactory XML_INPUT_FACTORY = xmlInputFactory();
+
+    private static final String READ_STATE = """
+            MATCH (h:HarvestState {endpoint: $endpoint})
+            RETURN h.watermark AS watermark, h.harvestedAt AS harvestedAt
+            """;
+
+    private static final String SAVE_STATE = """
+            MERGE (h:HarvestState {endpoint: $endpoint})
+            SET h.watermark = coalesce($watermark, h.watermark), h.harvestedAt = $harvestedAt
+            """;
+
+    @Inject
+    DspaceGateway gateway;
+
+    @Inject
+    IngestionPipeline pipeline;
+
+    @Inject
+    Driver driver;
+
+    @ConfigProperty(name = "kamila.harvest.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "kamila.harvest.endpoint", defaultValue = "https://dspace.kpfu.ru/oai/request")
+    String endpoint;
+
+    @ConfigProperty(name = "kamila.harvest.metadata-prefix", defaultValue = "oai_dc")
+    String metadataPrefix;
+
+    @ConfigProperty(name = "kamila.harvest.set")
+    Optional<String> set;
+
+    @ConfigProperty(name = "kamila.harvest.item-url-prefix", defaultValue = "https://dspace.kpfu.ru/xmlui/handle/")
+    String itemUrlPrefix;
+
+    @ConfigProperty(name = "kamila.harvest.max-attempts", defaultValue = "5")
+    int maxAttempts;
+
+    @ConfigProperty(name = "kamila.harvest.retry-backoff", defaultValue = "30s")
+    Duration retryBackoff;
+
+    @ConfigProperty(name = "kamila.harvest.max-retry-after", defaultValue = "10m")
+    Duration maxRetryAfter;
+
+    private volatile IngestionJob lastJob;
+
+    record OaiRecord(String identifier, String datestamp, boolean deleted) {
+    }
+
+    @Scheduled(every = "${kamila.harvest.interval:6h}", delayed = "${kamila.harvest.initial-delay:1m}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledHarvest() {
+        if (enabled) {
+            harvest();
+        }
+    }
+
+    /**
+     * Starts a harvest from the stored watermark, or returns the job of the harvest still in progress.
+     */
+    public synchronized IngestionJob harvest() {
+        var running = lastJob;
+        if (running != null && !running.isFinished()) {
+            log.info("Harvest of {} is still running as job {}", endpoint, running.getId());
+            return running;
+        }
+        var from = readState().watermark();
+        var latest = new AtomicReference<String>();
+        var job = pipeline.submit(items -> listRecords(from, latest, items), true);
+        job.whenFinished().thenAcceptAsync(finished -> finish(finished, latest.get()));
+        log.info("Started harvest of {} from {} as job {}", endpoint, from == null ? "the beginning" : from, job.getId());
+        lastJob = job;
+        return job;
+    }
+
+    public HarvestStatus getStatus() {
+        var state = readState();
+        return new HarvestStatus(endpoint, enabled, state.watermark(), state.harvestedAt(), lastJob);
+    }
+
+    /**
+     * Lists the records changed since {@code from}, or all of them, and hands the item URLs of those that are not
+     * deleted to {@code items}, while keeping the latest datestamp seen in {@code latest}.
+     */
+    void listRecords(String from, AtomicReference<String> latest, Consumer<String> items) throws IOException {
+        var granularity = request("Identify", null, null, null, null, OaiHarvester::readGranularity);
+        // A repository with day granularity rejects a full timestamp as a bad argument.
+        var since = from != null && DAY_GRANULARITY.equals(granularity) ? from.substring(0, DAY_GRANULARITY.length()) : from;
+        var listed = 0;
+        var deleted = 0;
+        var page = new ArrayList<OaiRecord>();
+        var token = request("ListRecords", metadataPrefix, set.orElse(null), since, null, in -> readRecords(in, page::add));
+        while (true) {
+            // The page is handed over after its response is closed: the pipeline may block, and the connection
+            // should not sit idle meanwhile.
+            for (var record : page) {
+                if (latest.get() == null || record.datestamp().compareTo(latest.get()) > 0) {
+                    latest.set(record.datestamp());
+                }
+                if (record.deleted()) {
+                    deleted++;
+                } else {
+                    listed++;
+                    items.accept(itemUrl(record.identifier()));
+                }
+            }
+            page.clear();
+            if (token == null) {
+                break;
+            }
+            // Every argument but the token is exclusive with it.
+            token = request("ListRecords", null, null, null, token, in -> readRecords(in, page::add));
+        }
+        log.info("Harvest of {} listed {} records, skipped {} deleted ones", endpoint, listed, deleted);
+    }
+
+    private void finish(IngestionJob job, String watermark) {
+        if (job.getStatus() == IngestionJob.Status.FAILED) {
+            log.warn("Harvest job {} failed, keeping the previous watermark", job.getId());
+            return;
+        }
+        // Records listed before the watermark are not listed again, so a failed item would be lost for good.
+        var advanced = job.getFailed().get() == 0 ? watermark : null;
+        if (advanced == null && watermark != null) {
+            log.warn("Harvest job {} failed to ingest {} items, keeping the previous watermark", job.getId(), job.getFailed().get());
+        }
+        try (var session = driver.session()) {
+            session.executeWrite(tx -> tx.run(SAVE_STATE, Values.parameters(
+                    "endpoint", endpoint,
+                    "watermark", advanced,
+                    "harvestedAt", job.getFinishedAt().toString())).consume());
+            log.info("Harvest job {} finished with status {}, watermark is now {}", job.getId(), job.getStatus(),
+                    advanced != null ? advanced : "unchanged");
+        } catch (Exception e) {
+            log.error("Failed to store the harvest watermark {} of job {}", watermark, job.getId(), e);
+        }
+    }
+
+    private HarvestStatus readState() {
+        try (var session = driver.session()) {
+            return session.executeRead(tx -> {
+                var result = tx.run(READ_STATE, Values.parameters("endpoint", endpoint));
+                if (!result.hasNext()) {
+                    return new HarvestStatus(endpoint, enabled, null, null, null);
+                }
+                var record = result.next();
+                var harvestedAt = record.get("harvestedAt").asString(null);
+                return new HarvestStatus(endpoint, enabled, record.get("watermark").asString(null),
+                        harvestedAt == null ? null : Instant.parse(harvestedAt), null);
+            });
+        }
+    }
+
+    /**
+     * Sends one OAI-PMH request and reads its response as it arrives. Flow-control rejections and calls rejected by
+     * the open circuit are retried up to {@code kamila.harvest.max-attempts} times.
+     */
+    private <T> T request(String verb, String prefix, String set, String from, String resumptionToken,
+                          DspaceGateway.OaiReader<T> reader) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            Duration delay;
+            try {
+                return gateway.oai(endpoint, verb, prefix, set, from, resumptionToken, reader);
+            } catch (XMLStreamException e) {
+                throw new IOException("Malformed OAI-PMH " + verb + " response from " + endpoint, e);
+            } catch (WebApplicationException e) {
+                var status = e.getResponse().getStatus();
+                if (status != 503 || attempt >= maxAttempts) {
+                    throw new IOException("OAI-PMH " + verb + " request to " + endpoint + " failed with HTTP " + status, e);
+                }
+                delay = retryAfter(e.getResponse().getHeaderString(HttpHeaders.RETRY_AFTER));
+                log.info("{} asked to retry {} in {} (attempt {})", endpoint, verb, delay, attempt);
+            } catch (CircuitBreakerOpenException e) {
+                if (attempt >= maxAttempts) {
+                    throw new IOException("OAI-PMH " + verb + " requests to " + endpoint + " keep failing", e);
+                }
+                delay = retryBackoff;
+                log.info("Circuit to {} is open, retrying {} in {} (attempt {})", endpoint, verb, delay, attempt);
+            }
+            try {
+                Thread.sleep(delay.toMillis());
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry " + verb);
+            }
+        }
+    }
+
+    private Duration retryAfter(String header) {
+        var delay = retryBackoff;
+        if (header != null && StringUtils.isNumeric(header.trim())) {
+            delay = Duration.ofSeconds(Long.parseLong(header.trim()));
+        }
+        return delay.compareTo(maxRetryAfter) > 0 ? maxRetryAfter : delay;
+    }
+
+    /**
+     * Maps an OAI identifier such as {@code oai:dspace.kpfu.ru:net/160512} to the XMLUI item page of its
+     * handle.
+     */
+    private String itemUrl(String identifier) {
+        var handle = identifier.startsWith("oai:")
+                ? StringUtils.substringAfter(StringUtils.substringAfter(identifier, ":"), ":")
+                : identifier;
+        return itemUrlPrefix + handle;
+    }
+
+    private static String readGranularity(InputStream in) throws IOException, XMLStreamException {
+        var reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "granularity" -> {
+                            return reader.getElementText().trim();
+                        }
+                        case "error" -> throw oaiError(reader);
+                        default -> {
+                        }
+                    }
+                }
+            }
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the record headers of a {@code ListRecords} response; the metadata itself is not needed, since the item
+     * page is scraped anyway.
+     *
+     * @return the resumption token of the next page, or {@code null} on the last one
+     */
+    static String readRecords(InputStream in, Consumer<OaiRecord> records) throws IOException, XMLStreamException {
+        var reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            String token = null;
+            String identifier = null;
+            String datestamp = null;
+            var deleted = false;
+            var inHeader = false;
+            while (reader.hasNext()) {
+                var event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "header" -> {
+                            inHeader = true;
+                            identifier = null;
+                            datestamp = null;
+                            deleted = "deleted".equals(reader.getAttributeValue(null, "status"));
+                        }
+                        case "identifier" -> {
+                            if (inHeader) {
+                                identifier = reader.getElementText().trim();
+                            }
+                        }
+                        case "datestamp" -> {
+                            if (inHeader) {
+                                datestamp = reader.getElementText().trim();
+                            }
+                        }
+                        case "resumptionToken" -> token = StringUtils.trimToNull(reader.getElementText());
+                        case "error" -> {
+                            var error = oaiError(reader);
+                            if (error.getMessage().startsWith(NO_RECORDS_MATCH)) {
+                                return null;
+                            }
+                            throw error;
+                        }
+                        default -> {
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "header".equals(reader.getLocalName())) {
+                    inHeader = false;
+                    if (identifier != null && datestamp != null) {
+                        records.accept(new OaiRecord(identifier, datestamp, deleted));
+                    }
+                }
+            }
+            return token;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static IOException oaiError(XMLStreamReader reader) throws XMLStreamException {
+        var code = reader.getAttributeValue(null, "code");
+        return new IOException(code + ": " + reader.getElementText().trim());
+    }
+
+    private static XMLInputFactory xmlInputFactory() {
+        var factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -0,0 +1,310 @@
+package ru.kamila.services;
+
+import ru.kamila.models.Suggestion;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Character trie over the words of suggestion texts. Every node keeps the {@code capacity} best-ranked suggestions
+ * of its subtree, so a single-word prefix is answered by walking the prefix and copying that list. Words are folded
+ * the same way as the {@code standard-folding} full-text analyzer: lower case without diacritics.
+ * <p>
+ * Not thread-safe; {@link SuggestIndex} guards it with a read-write lock.
+ */
+final class PrefixTrie {
+    static final Comparator<Suggestion> RANK = Comparator.comparingInt(Suggestion::weight).reversed()
+            .thenComparingInt(suggestion -> suggestion.text().length())
+            .thenComparing(Suggestion::text)
+            .thenComparing(Suggestion::id);
+
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private record Entry(Suggestion suggestion, String[] words) {
+    }
+
+    private static final class Node {
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        Entry[] terminal = NO_ENTRIES;
+        Entry[] top = NO_ENTRIES;
+        // Number of words ending in the subtree, to pick the smallest one to walk.
+        int words;
+
+        Node child(char label) {
+            var index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node childOrCreate(char label) {
+            var index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            var insertAt = -index - 1;
+            var node = new Node();
+            labels = insert(labels, insertAt, label);
+            children = insert(children, insertAt, node);
+            return node;
+        }
+    }
+
+    private final int capacity;
+    private final Node root = new Node();
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    PrefixTrie(int capacity) {
+        this.capacity = capacity;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Adds a suggestion or replaces the one with the same kind and id.
+     */
+    void put(Suggestion suggestion) {
+        var key = key(suggestion.kind(), suggestion.id());
+        var words = words(suggestion.text());
+        var replacement = new Entry(suggestion, words);
+        var previous = entries.put(key, replacement);
+        if (previous != null && Arrays.equals(previous.words(), words)) {
+            reweigh(previous, replacement);
+            return;
+        }
+        if (previous != null) {
+            remove(previous);
+        }
+        for (var word : words) {
+            var node = root;
+            for (int i = 0; i < word.length(); i++) {
+                node = node.childOrCreate(word.charAt(i));
+                node.words++;
+                offer(node, replacement);
+            }
+            node.terminal = insert(node.terminal, node.terminal.length, replacement);
+        }
+    }
+
+    /**
+     * Returns the best-ranked suggestions that have a word starting with every word of the query; the last word of
+     * a query being typed is usually incomplete, so all of them are matched as prefixes.
+     */
+    List<Suggestion> suggest(String query, int limit) {
+        var prefixes = words(query);
+        if (prefixes.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        Node smallest = null;
+        for (var prefix : prefixes) {
+            var node = find(prefix);
+            if (node == null) {
+                return List.of();
+            }
+            if (smallest == null || node.words < smallest.words) {
+                smallest = node;
+            }
+        }
+        // The cached list is sorted, so its matches are the best ones whenever there are enough of them.
+        var matches = Arrays.stream(smallest.top)
+                .filter(entry -> matchesAll(entry, prefixes))
+                .limit(limit)
+                .map(Entry::suggestion)
+                .toList();
+        if (matches.size() == limit || smallest.top.length < capacity) {
+            return matches;
+        }
+        return collect(smallest, entry -> matchesAll(entry, prefixes), limit).stream()
+                .map(Entry::suggestion)
+                .toList();
+    }
+
+    static String[] words(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+        var folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        var words = new LinkedHashSet<String>();
+        for (var word : SEPARATOR.split(folded)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words.toArray(String[]::new);
+    }
+
+    private static String key(Suggestion.Kind kind, String id) {
+        return kind + ":" + id;
+    }
+
+    private Node find(String prefix) {
+        var node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    private static boolean matchesAll(Entry entry, String[] prefixes) {
+        for (var prefix : prefixes) {
+            var matched = false;
+            for (var word : entry.words()) {
+                if (word.startsWith(prefix)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void remove(Entry entry) {
+        // Terminals first: a refill walks the subtree and must not find the entry again under another word.
+        for (var word : entry.words()) {
+            var node = find(word);
+            node.terminal = without(node.terminal, entry);
+        }
+        for (var word : entry.words()) {
+            for (var node : path(word)) {
+                node.words--;
+                var wasFull = node.top.length == capacity;
+                var top = without(node.top, entry);
+                if (top != node.top) {
+                    node.top = wasFull ? refill(node) : top;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces an entry whose words did not change, e.g. an author whose number of works did.
+     */
+    private void reweigh(Entry previous, Entry replacement) {
+        for (var word : previous.words()) {
+            var node = find(word);
+            node.terminal[indexOf(node.terminal, previous)] = replacement;
+        }
+        for (var word : previous.words()) {
+            for (var node : path(word)) {
+                var index = indexOf(node.top, previous);
+                if (index < 0) {
+                    offer(node, replacement);
+                } else if (node.top.length < capacity || RANK.compare(replacement.suggestion(), previous.suggestion()) <= 0) {
+                    node.top[index] = replacement;
+                    Arrays.sort(node.top, Comparator.comparing(Entry::suggestion, RANK));
+                } else {
+                    node.top = refill(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * Nodes along a word, excluding the root.
+     */
+    private List<Node> path(String word) {
+        var path = new ArrayList<Node>(word.length());
+        var node = root;
+        for (int i = 0; i < word.length(); i++) {
+            node = node.child(word.charAt(i));
+            path.add(node);
+        }
+        return path;
+    }
+
+    private void offer(Node node, Entry entry) {
+        if (indexOf(node.top, entry) >= 0) {
+            return;
+        }
+        var position = 0;
+        while (position < node.top.length && RANK.compare(node.top[position].suggestion(), entry.suggestion()) <= 0) {
+            position++;
+        }
+        if (position >= capacity) {
+            return;
+        }
+        var top = insert(node.top, position, entry);
+        node.top = top.length > capacity ? Arrays.copyOf(top, capacity) : top;
+    }
+
+    private Entry[] refill(Node node) {
+        return collect(node, entry -> true, capacity).toArray(Entry[]::new);
+    }
+
+    /**
+     * Collects the distinct matching entries of a subtree, best-ranked first, keeping at most {@code limit} of them.
+     */
+    private static List<Entry> collect(Node node, Predicate<Entry> filter, int limit) {
+        Set<Entry> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        var stack = new ArrayList<Node>();
+        stack.add(node);
+        while (!stack.isEmpty()) {
+            var current = stack.remove(stack.size() - 1);
+            for (var entry : current.terminal) {
+                if (filter.test(entry)) {
+                    seen.add(entry);
+                }
+            }
+            Collections.addAll(stack, current.children);
+        }
+        return seen.stream()
+                .sorted(Comparator.comparing(Entry::suggestion, RANK))
+                .limit(limit)
+                .toList();
+    }
+
+    private static int indexOf(Entry[] entries, Entry entry) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] == entry) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Entry[] without(Entry[] entries, Entry entry) {
+        var index = indexOf(entries, entry);
+        if (index < 0) {
+            return entries;
+        }
+        var result = new Entry[entries.length - 1];
+        System.arraycopy(entries, 0, result, 0, index);
+        System.arraycopy(entries, index + 1, result, index, entries.length - index - 1);
+        return result;
+    }
+
+    private static char[] insert(char[] array, int index, char value) {
+        var result = new char[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static <T> T[] insert(T[] array, int index, T value) {
+        var result = Arrays.copyOf(array, array.length + 1);
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        result[index] = value;
+        return result;
+    }
+}
@@ -0,0 +1,279 @@
+package ru.kamila.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.kamila.models.KnowledgeWrittenEvent;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders the first page of a PDF blob to a PNG thumbnail with PDFBox and keeps the page text as a short snippet,
+ * both stored in the {@link PreviewStore}.
+ * <p>
+ * Rendering runs on a bounded low-priority pool, never on a request thread: documents are queued after they are
+ * written, and a request for a preview that is not cached, e.g. one evicted from the cache, queues it again. PDFBox
+ * parses objects lazily, so little beyond the first page is read, and it buffers streams in a temporary file rather
+ * than on the heap. Each render runs on a thread of its own that is interrupted and abandoned after
+ * {@code kamila.preview.timeout}, so a PDF on which PDFBox hangs does not hold the worker. PDFBox does not check for
+ * interrupts, so the abandoned render goes on until it ends by itself: only
+ * {@code kamila.preview.max-abandoned-renders} such threads are allowed, a blob that times out
+ * {@code kamila.preview.max-timeouts} times is not rendered again, and while abandoned renders hold every spare thread,
+ * nothing new is started.
+ * <p>
+ * Blobs that are not PDFs, have no pages or are encrypted are remembered until restart and not retried. Other
+ * failures, e.g. a blob that is not downloaded yet, an I/O error or a timeout, are only remembered for
+ * {@code kamila.preview.failure-retry-delay}.
+ */
+@ApplicationScoped
+@Slf4j
+public class PreviewRenderer {
+    private static final byte[] PDF_MAGIC = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+    public enum Status {
+        READY,
+        PENDING,
+        UNAVAILABLE
+    }
+
+    @Inject
+    BlobStore blobStore;
+
+    @Inject
+    PreviewStore previewStore;
+
+    @ConfigProperty(name = "kamila.preview.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "kamila.preview.threads", defaultValue = "1")
+    int threads;
+
+    @ConfigProperty(name = "kamila.preview.queue-capacity", defaultValue = "200")
+    int queueCapacity;
+
+    @ConfigProperty(name = "kamila.preview.width", defaultValue = "320")
+    int width;
+
+    @ConfigProperty(name = "kamila.preview.snippet-length", defaultValue = "500")
+    int snippetLength;
+
+    @ConfigProperty(name = "kamila.preview.timeout", defaultValue = "30s")
+    Duration timeout;
+
+    @ConfigProperty(name = "kamila.preview.failure-retry-delay", defaultValue = "10m")
+    Duration failureRetryDelay;
+
+    @ConfigProperty(name = "kamila.preview.max-abandoned-renders", defaultValue = "1")
+    int maxAbandonedRenders;
+
+    @ConfigProperty(name = "kamila.preview.max-timeouts", defaultValue = "2")
+    int maxTimeouts;
+
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    // Blob hash -> when rendering it may be tried again.
+    private final Map<String, Instant> unavailable = new ConcurrentHashMap<>();
+    private final Map<String, Integer> timeouts = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor workers;
+    private ThreadPoolExecutor renderers;
+
+    private record Preview(byte[] image, String snippet) {
+    }
+
+    @PostConstruct
+    void init() {
+        var counter = new AtomicInteger();
+        workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            var thread = new Thread(runnable, "preview-renderer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        // A thread for each worker's render and a few for abandoned ones; without a queue, a render that cannot start
+        // at once is rejected.
+        var rendererCounter = new AtomicInteger();
+        renderers = new ThreadPoolExecutor(0, threads + maxAbandonedRenders, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            var thread = new Thread(runnable, "preview-render-" + rendererCounter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+        renderers.shutdownNow();
+    }
+
+    void onKnowledgeWritten(@Observes KnowledgeWrittenEvent event) {
+        if (!enabled) {
+            return;
+        }
+        for (var knowledge : event.knowledges()) {
+            if (knowledge.getFileHash() != null && !previewStore.contains(knowledge.getFileHash())) {
+                enqueue(knowledge.getFileHash());
+            }
+        }
+    }
+
+    /**
+     * Returns whether the preview of a blob can be served, queueing it for rendering if it is not cached yet.
+     */
+    public Status request(String fileHash) {
+        if (previewStore.contains(fileHash)) {
+            return Status.READY;
+        }
+        if (!enabled || isUnavailable(fileHash)) {
+            return Status.UNAVAILABLE;
+        }
+        enqueue(fileHash);
+        return Status.PENDING;
+    }
+
+    private void enqueue(String fileHash) {
+        if (!queued.add(fileHash)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    render(fileHash);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    unavailable.put(fileHash, Instant.now().plus(failureRetryDelay));
+                    log.warn("Could not render a preview of blob {}, retrying in {}: {}", fileHash, failureRetryDelay,
+                            e.getMessage());
+                } finally {
+                    queued.remove(fileHash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(fileHash);
+            log.debug("Preview queue is full, blob {} is rendered when it is requested again", fileHash);
+        }
+    }
+
+    private boolean isUnavailable(String fileHash) {
+        var retryAt = unavailable.get(fileHash);
+        if (retryAt == null) {
+            return false;
+        }
+        if (Instant.now().isBefore(retryAt)) {
+            return true;
+        }
+        unavailable.remove(fileHash, retryAt);
+        return false;
+    }
+
+    private void render(String fileHash) throws Exception {
+        if (previewStore.contains(fileHash)) {
+            return;
+        }
+        if (!blobStore.exists(fileHash)) {
+            throw new NoSuchFileException("blob " + fileHash + " is not downloaded");
+        }
+        if (!isPdf(fileHash)) {
+            unavailable.put(fileHash, Instant.MAX);
+            return;
+        }
+        var started = System.nanoTime();
+        Future<Preview> rendering;
+        try {
+            rendering = renderers.submit(() -> renderFirstPage(fileHash));
+        } catch (RejectedExecutionException e) {
+            log.debug("Every render thread is held by an abandoned render, blob {} is rendered when it is requested again",
+                    fileHash);
+            return;
+        }
+        Preview preview;
+        try {
+            preview = rendering.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            rendering.cancel(true);
+            if (timeouts.merge(fileHash, 1, Integer::sum) >= maxTimeouts) {
+                timeouts.remove(fileHash);
+                unavailable.put(fileHash, Instant.MAX);
+                log.warn("Rendering a preview of blob {} timed out {} times, giving up", fileHash, maxTimeouts);
+                return;
+            }
+            throw new IOException("rendering took longer than " + timeout);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InvalidPasswordException) {
+                unavailable.put(fileHash, Instant.MAX);
+                return;
+            }
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+        if (preview == null) {
+            unavailable.put(fileHash, Instant.MAX);
+            return;
+        }
+        timeouts.remove(fileHash);
+        previewStore.put(fileHash, preview.image(), preview.snippet());
+        log.debug("Rendered a preview of blob {} ({} bytes) in {} ms", fileHash, preview.image().length,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Renders the first page and takes its text, or returns {@code null} if the document has no pages.
+     */
+    private Preview renderFirstPage(String fileHash) throws IOException {
+        try (var document = Loader.loadPDF(blobStore.path(fileHash).toFile(), IOUtils.createTempFileOnlyStreamCache())) {
+            if (document.getNumberOfPages() == 0) {
+                return null;
+            }
+            var page = document.getPage(0);
+            var box = page.getCropBox();
+            var pageWidth = page.getRotation() % 180 == 0 ? box.getWidth() : box.getHeight();
+            var rendered = new PDFRenderer(document).renderImage(0, width / pageWidth, ImageType.RGB);
+            var png = new ByteArrayOutputStream();
+            ImageIO.write(rendered, "png", png);
+
+            var stripper = new PDFTextStripper();
+            stripper.setStartPage(1);
+            stripper.setEndPage(1);
+            var snippet = StringUtils.abbreviate(stripper.getText(document).replaceAll("\\s+", " ").trim(), snippetLength);
+            return new Preview(png.toByteArray(), snippet);
+        }
+    }
+
+    private boolean isPdf(String fileHash) throws IOException {
+        try (var in = Files.newInputStream(blobStore.path(fileHash))) {
+            return Arrays.equals(in.readNBytes(PDF_MAGIC.length), PDF_MAGIC);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package ru.kamila.services;
+
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Disk cache of rendered previews, one {@code <hash>.png} image and one {@code <hash>.txt} snippet per blob. A blob
+ * never changes, so neither does its preview; entries are only ever added and evicted.
+ * <p>
+ * The cache holds at most {@code kamila.preview.max-size} bytes. The least recently used previews are deleted to make
+ * room; after a restart, the oldest ones go first. Files are written next to their final name and moved into place,
+ * like blobs, so a reader never sees a partial preview.
+ */
+@ApplicationScoped
+@Slf4j
+public class PreviewStore {
+    private static final String IMAGE_SUFFIX = ".png";
+    private static final String SNIPPET_SUFFIX = ".txt";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    @ConfigProperty(name = "kamila.preview.path", defaultValue = "data/previews")
+    String rootPath;
+
+    @ConfigProperty(name = "kamila.preview.max-size", defaultValue = "512M")
+    MemorySize maxSize;
+
+    Path root;
+
+    // Access-ordered: iteration starts with the least recently used preview. Guarded by this.
+    private final Map<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    @PostConstruct
+    void init() {
+        root = Path.of(rootPath);
+        try {
+            Files.createDirectories(root);
+            try (var files = Files.list(root)) {
+                files.filter(file -> file.getFileName().toString().endsWith(TMP_SUFFIX)).forEach(PreviewStore::deleteQuietly);
+            }
+            try (var files = Files.list(root)) {
+                files.filter(file -> file.getFileName().toString().endsWith(IMAGE_SUFFIX))
+                        .sorted(Comparator.comparing(PreviewStore::lastModified))
+                        .forEach(image -> {
+                            var hash = image.getFileName().toString().replace(IMAGE_SUFFIX, "");
+                            add(hash, size(image) + size(snippet(hash)));
+                        });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open preview directory " + root, e);
+        }
+        evict();
+        log.info("Using preview cache at {} with {} previews, {} of {} bytes", root.toAbsolutePath(), sizes.size(),
+                totalBytes, maxSize.asLongValue());
+    }
+
+    /**
+     * Whether the preview of a blob is cached; counts as a use for eviction.
+     */
+    public synchronized boolean contains(String hash) {
+        return sizes.get(hash) != null;
+    }
+
+    /**
+     * Reads the image of a cached preview, or returns {@code null} if it is not cached or was evicted while it was
+     * being looked up; counts as a use for eviction.
+     */
+    public byte[] readImage(String hash) throws IOException {
+        return read(hash, image(hash));
+    }
+
+    /**
+     * Reads the snippet of a cached preview, like {@link #readImage}.
+     */
+    public byte[] readSnippet(String hash) throws IOException {
+        return read(hash, snippet(hash));
+    }
+
+    public void put(String hash, byte[] image, String snippet) throws IOException {
+        var text = snippet.getBytes(StandardCharsets.UTF_8);
+        // The snippet goes first: a preview counts as present once its image is.
+        write(snippet(hash), text);
+        write(image(hash), image);
+        synchronized (this) {
+            add(hash, image.length + text.length);
+            evict();
+        }
+    }
+
+    /**
+     * Only the lookup holds the lock; the file is read outside it. An eviction in between deletes the file, which is
+     * then a miss like any other.
+     */
+    private byte[] read(String hash, Path file) throws IOException {
+        Long size;
+        synchronized (this) {
+            size = sizes.get(hash);
+        }
+        if (size == null) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            forget(hash, size);
+            return null;
+        }
+    }
+
+    /**
+     * Drops an entry whose file is gone, unless it was evicted or replaced meanwhile, so that it is rendered again.
+     */
+    private synchronized void forget(String hash, long size) {
+        if (sizes.remove(hash, size)) {
+            totalBytes -= size;
+            deleteQuietly(image(hash));
+            deleteQuietly(snippet(hash));
+        }
+    }
+
+    private Path image(String hash) {
+        return root.resolve(hash + IMAGE_SUFFIX);
+    }
+
+    private Path snippet(String hash) {
+        return root.resolve(hash + SNIPPET_SUFFIX);
+    }
+
+    private void add(String hash, long size) {
+        var previous = sizes.put(hash, size);
+        totalBytes += size - (previous == null ? 0 : previous);
+    }
+
+    private void evict() {
+        var budget = maxSize.asLongValue();
+        for (var iterator = sizes.entrySet().iterator(); totalBytes > budget && iterator.hasNext(); ) {
+            var eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            deleteQuietly(image(eldest.getKey()));
+            deleteQuietly(snippet(eldest.getKey()));
+            log.debug("Evicted preview {}", eldest.getKey());
+        }
+    }
+
+    private static void write(Path target, byte[] content) throws IOException {
+        var tmp = target.resolveSibling(target.getFileName() + TMP_SUFFIX);
+        try {
+            Files.write(tmp, content);
+            BlobStore.moveIntoPlace(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+}
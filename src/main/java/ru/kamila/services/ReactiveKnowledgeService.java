@@ -0,0 +1,118 @@
+package ru.kamila.services;
+
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CacheResult;
+import io.quarkus.cache.CompositeCacheKey;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Query;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.async.AsyncSession;
+import org.neo4j.driver.async.ResultCursor;
+import ru.kamila.entities.KnowledgeEntity;
+import ru.kamila.models.FacetCounts;
+import ru.kamila.models.KnowledgeFilter;
+import ru.kamila.models.KnowledgePage;
+import ru.kamila.models.PageCursor;
+
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of the read side of {@link KnowledgeService}, used when {@code kamila.api.non-blocking}
+ * is enabled. Queries go through the async Bolt session, so no thread waits on a database round-trip. The Cypher,
+ * the row mapping and the cache names are shared with the blocking service, so both modes return identical results
+ * and see the same cache entries and invalidations.
+ */
+@ApplicationScoped
+public class ReactiveKnowledgeService {
+
+    @Inject
+    Driver driver;
+
+    @Inject
+    KnowledgeService knowledgeService;
+
+    @Inject
+    Instrumentation instrumentation;
+
+    @Inject
+    FacetIndex facetIndex;
+
+    @CacheName(KnowledgeService.FIRST_LISTING_PAGES_CACHE)
+    Cache firstListingPages;
+
+    @CacheResult(cacheName = KnowledgeService.KNOWLEDGE_BY_ID_CACHE)
+    public Uni<KnowledgeEntity> getKnowledge(String id) {
+        return read("knowledge-by-id", KnowledgeService.knowledgeQuery(id))
+                .map(records -> records.isEmpty() ? null : KnowledgeService.recordToKnowledgeEntity(records.get(0)));
+    }
+
+    public Uni<List<KnowledgeEntity>> searchKnowledges(String searchText, KnowledgeFilter filter, int page, int size) {
+        return read("search", knowledgeService.searchQuery(searchText, filter, null, page * size, size))
+                .map(KnowledgeService::recordsToKnowledgeEntityList);
+    }
+
+    public Uni<KnowledgePage> searchKnowledges(String searchText, KnowledgeFilter filter, String cursor, int size) {
+        return read("search", knowledgeService.searchQuery(searchText, filter, PageCursor.decode(cursor), 0, size + 1))
+                .map(records -> KnowledgeService.toPage(records, size, KnowledgeService::scoreCursor));
+    }
+
+    public Uni<List<KnowledgeEntity>> getAllKnowledges(KnowledgeFilter filter, int page, int size) {
+        var query = KnowledgeService.listingQuery(KnowledgeService.LIST_ALL, Values.parameters(), filter, null, page * size, size);
+        Uni<List<KnowledgeEntity>> listing = read("list-all", query).map(KnowledgeService::recordsToKnowledgeEntityList);
+        return page == 0 && filter.isEmpty()
+                ? firstListingPages.getAsync(new CompositeCacheKey(KnowledgeService.FIRST_PAGE, size), key -> listing)
+                : listing;
+    }
+
+    public Uni<KnowledgePage> getAllKnowledges(KnowledgeFilter filter, String cursor, int size) {
+        var after = PageCursor.decode(cursor);
+        var query = KnowledgeService.listingQuery(KnowledgeService.LIST_ALL, Values.parameters(), filter, after, 0, size + 1);
+        Uni<KnowledgePage> listing = read("list-all", query).map(records -> KnowledgeService.toPage(records, size, KnowledgeService::creationDateCursor));
+        return after == null && filter.isEmpty()
+                ? firstListingPages.getAsync(new CompositeCacheKey(KnowledgeService.FIRST_CURSOR_PAGE, size), key -> listing)
+                : listing;
+    }
+
+    public Uni<FacetCounts> getFacets(String searchText, KnowledgeFilter filter) {
+        if (searchText == null || searchText.isBlank()) {
+            return Uni.createFrom().item(() -> facetIndex.count(null, filter));
+        }
+        return read("search-ids", knowledgeService.searchIdsQuery(searchText))
+                .map(records -> facetIndex.count(facetIndex.ordinalsOf(records.stream().map(record -> record.get("id").asString()).toList()), filter));
+    }
+
+    @CacheResult(cacheName = KnowledgeService.KNOWLEDGE_BY_AUTHOR_CACHE)
+    public Uni<List<KnowledgeEntity>> getKnowledgesByAuthor(String authorId, int page, int size) {
+        return read("list-by-author", KnowledgeService.listingQuery(KnowledgeService.LIST_BY_AUTHOR, Values.parameters("authorId", authorId), KnowledgeFilter.NONE, null, page * size, size))
+                .map(KnowledgeService::recordsToKnowledgeEntityList);
+    }
+
+    @CacheResult(cacheName = KnowledgeService.KNOWLEDGE_BY_AUTHOR_CACHE)
+    public Uni<KnowledgePage> getKnowledgesByAuthor(String authorId, String cursor, int size) {
+        return read("list-by-author", KnowledgeService.listingQuery(KnowledgeService.LIST_BY_AUTHOR, Values.parameters("authorId", authorId), KnowledgeFilter.NONE, PageCursor.decode(cursor), 0, size + 1))
+                .map(records -> KnowledgeService.toPage(records, size, KnowledgeService::creationDateCursor));
+    }
+
+    @CacheResult(cacheName = KnowledgeService.RECOMMENDATIONS_CACHE)
+    public Uni<List<KnowledgeEntity>> getAuthorBasedRecommendations(String knowledgeId, int limit) {
+        return read("recommendations", KnowledgeService.recommendationsQuery(knowledgeId, limit))
+                .map(KnowledgeService::recordsToKnowledgeEntityList);
+    }
+
+    private Uni<List<Record>> read(String name, Query query) {
+        return Uni.createFrom().completionStage(() -> {
+            var started = System.nanoTime();
+            var session = driver.session(AsyncSession.class);
+            return session.executeReadAsync(tx -> tx.runAsync(query).thenCompose(ResultCursor::listAsync))
+                    .whenComplete((records, error) -> {
+                        session.closeAsync();
+                        instrumentation.recordQuery(name, System.nanoTime() - started, records == null ? 0 : records.size(), error);
+                    });
+        });
+    }
+}
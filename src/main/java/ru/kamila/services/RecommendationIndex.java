@@ -0,0 +1,205 @@
+package ru.kamila.services;
+
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CompositeCacheKey;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import ru.kamila.models.KnowledgeWrittenEvent;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Materializes co-authorship recommendations as {@code (:Knowledge)-[:SIMILAR {weight}]->(:Knowledge)}
+ * relationships, where the weight is the number of shared authors and every document keeps only its
+ * {@code kamila.recommendations.top-k} strongest neighbours. Serving recommendations is then a single
+ * relationship expansion instead of a walk over all works of all authors.
+ * <p>
+ * Written documents are updated incrementally in the background. A scheduled full rebuild recomputes every list
+ * and repairs the rare case where an updated document drops out of a neighbour's list and leaves a slot that the
+ * incremental update cannot refill.
+ */
+@ApplicationScoped
+@Slf4j
+public class RecommendationIndex {
+
+    private static final String REPLACE_OUTGOING = """
+            UNWIND $ids AS id
+            MATCH (k:Knowledge {id: id})
+            CALL {
+              WITH k
+              OPTIONAL MATCH (k)-[old:SIMILAR]->()
+              DELETE old
+            }
+            CALL {
+              WITH k
+              MATCH (k)-[:WRITTEN_BY]->(a:Author)<-[:WRITTEN_BY]-(other:Knowledge)
+              WHERE other <> k
+              WITH other, count(a) AS weight
+              ORDER BY weight DESC, other.id ASC
+              LIMIT $topK
+              CREATE (k)-[:SIMILAR {weight: weight}]->(other)
+            }
+            """;
+
+    private static final String UPDATE_INCOMING = """
+            UNWIND $ids AS id
+            MATCH (k:Knowledge {id: id})
+            CALL {
+              WITH k
+              OPTIONAL MATCH (k)<-[stale:SIMILAR]-()
+              DELETE stale
+            }
+            WITH k
+            MATCH (k)-[:WRITTEN_BY]->(a:Author)<-[:WRITTEN_BY]-(other:Knowledge)
+            WHERE other <> k
+            WITH k, other, count(a) AS weight
+            MERGE (other)-[s:SIMILAR]->(k)
+            SET s.weight = weight
+            WITH DISTINCT other
+            CALL {
+              WITH other
+              MATCH (other)-[s:SIMILAR]->(n:Knowledge)
+              WITH s, n
+              ORDER BY s.weight DESC, n.id ASC
+              WITH collect(s) AS rels
+              FOREACH (r IN rels[$topK..] | DELETE r)
+            }
+            RETURN collect(other.id) AS affected
+            """;
+
+    @Inject
+    Driver driver;
+
+    @CacheName(KnowledgeService.RECOMMENDATIONS_CACHE)
+    Cache recommendations;
+
+    @ConfigProperty(name = "kamila.recommendations.top-k", defaultValue = "20")
+    int topK;
+
+    @ConfigProperty(name = "kamila.recommendations.rebuild-batch-size", defaultValue = "500")
+    int rebuildBatchSize;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ExecutorService updater = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "recommendation-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    void onStart(@Observes StartupEvent event) {
+        updater.execute(() -> {
+            try {
+                if (needsBootstrap()) {
+                    log.info("No materialized recommendations found, building them now.");
+                    rebuild();
+                }
+            } catch (Exception e) {
+                log.error("Failed to bootstrap the recommendation index", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        updater.shutdownNow();
+    }
+
+    void onKnowledgeWritten(@Observes KnowledgeWrittenEvent event) {
+        var ids = event.knowledges().stream().map(knowledge -> knowledge.getId().toString()).toList();
+        updater.execute(() -> {
+            try {
+                update(ids);
+            } catch (Exception e) {
+                log.error("Failed to update recommendations for {} documents, the next rebuild will repair them", ids.size(), e);
+            }
+        });
+    }
+
+    @Scheduled(cron = "${kamila.recommendations.rebuild-cron:0 0 3 * * ?}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * Recomputes the neighbour lists of the given documents and of every document that shares an author with them.
+     */
+    public void update(List<String> ids) {
+        Set<String> affected;
+        writeLock.lock();
+        try (var session = driver.session()) {
+            affected = session.executeWrite(tx -> {
+                var parameters = Values.parameters("ids", ids, "topK", topK);
+                tx.run(REPLACE_OUTGOING, parameters).consume();
+                return new HashSet<>(tx.run(UPDATE_INCOMING, parameters).single().get("affected").asList(Value::asString));
+            });
+        } finally {
+            writeLock.unlock();
+        }
+        affected.addAll(ids);
+        recommendations.invalidateIf(key -> key instanceof CompositeCacheKey composite
+                && affected.contains(composite.getKeyElements()[0])).await().indefinitely();
+        log.debug("Updated recommendations of {} documents", affected.size());
+    }
+
+    /**
+     * Recomputes every neighbour list, one batch of documents per transaction. Each document's list is replaced in
+     * place, so readers never see an empty index while the rebuild is running.
+     */
+    public void rebuild() {
+        var started = System.currentTimeMillis();
+        var lastId = "";
+        var processed = 0;
+        while (true) {
+            var afterId = lastId;
+            List<String> ids;
+            try (var session = driver.session()) {
+                ids = session.executeRead(tx -> tx.run("""
+                                MATCH (k:Knowledge)
+                                WHERE k.id > $afterId
+                                RETURN k.id AS id
+                                ORDER BY id
+                                LIMIT $limit
+                                """, Values.parameters("afterId", afterId, "limit", rebuildBatchSize))
+                        .list(record -> record.get("id").asString()));
+            }
+            if (ids.isEmpty()) {
+                break;
+            }
+            writeLock.lock();
+            try (var session = driver.session()) {
+                session.executeWrite(tx -> tx.run(REPLACE_OUTGOING, Values.parameters("ids", ids, "topK", topK)).consume());
+            } finally {
+                writeLock.unlock();
+            }
+            processed += ids.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+        recommendations.invalidateAll().await().indefinitely();
+        log.info("Rebuilt recommendations for {} documents in {} ms", processed, System.currentTimeMillis() - started);
+    }
+
+    private boolean needsBootstrap() {
+        try (var session = driver.session()) {
+            var record = session.executeRead(tx -> tx.run("""
+                    RETURN EXISTS { MATCH (:Knowledge)-[:WRITTEN_BY]->(:Author) } AS hasKnowledge,
+                           EXISTS { MATCH ()-[:SIMILAR]->() } AS hasSimilar
+                    """).single());
+            return record.get("hasKnowledge").asBoolean() && !record.get("hasSimilar").asBoolean();
+        }
+    }
+}
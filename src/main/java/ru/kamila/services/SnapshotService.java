@@ -0,0 +1,295 @@
+package ru.kamila.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import ru.kamila.entities.KnowledgeEntity;
+import ru.kamila.models.KnowledgeSource;
+import ru.kamila.models.SnapshotAuthor;
+import ru.kamila.models.SnapshotHeader;
+import ru.kamila.models.SnapshotImportResult;
+import ru.kamila.models.SnapshotKnowledge;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the corpus between environments as newline-delimited JSON. A snapshot is a header line, the authors, the
+ * document files if requested, and the documents, in that order, so every line only references what came before it.
+ * <p>
+ * The export streams each query result straight into the response, so memory use does not depend on the size of the
+ * corpus. The import reads the snapshot token by token, decodes file contents directly into the blob store and writes
+ * authors and documents in batches of {@code kamila.snapshot.import-batch-size} through {@link KnowledgeBatchWriter},
+ * so the usual write observers (caches, recommendations, suggestions, facets, text extraction) see the imported
+ * documents as well. Everything is merged by key, so an interrupted import can simply be repeated.
+ */
+@ApplicationScoped
+@Slf4j
+public class SnapshotService {
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+    private static final String BLOB_KIND = "blob";
+
+    private static final String ALL_AUTHORS = "MATCH (a:Author) RETURN a.id AS id, a.name AS name";
+
+    private static final String ALL_FILE_HASHES = """
+            MATCH (k:Knowledge)
+            WHERE k.fileHash IS NOT NULL
+            RETURN DISTINCT k.fileHash AS hash
+            """;
+
+    private static final String ALL_KNOWLEDGES = "MATCH (k:Knowledge) RETURN k, [(k)-[:WRITTEN_BY]->(a:Author) | a.name] AS authors";
+
+    // Existing authors keep their id, so references from the target environment stay valid.
+    private static final String MERGE_AUTHORS = """
+            UNWIND $rows AS row
+            MERGE (a:Author {name: row.name})
+            ON CREATE SET a.id = row.id
+            """;
+
+    @Inject
+    Driver driver;
+
+    @Inject
+    BlobStore blobStore;
+
+    @Inject
+    KnowledgeBatchWriter batchWriter;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @ConfigProperty(name = "kamila.snapshot.import-batch-size", defaultValue = "500")
+    int importBatchSize;
+
+    @ConfigProperty(name = "kamila.ingest.max-file-size", defaultValue = "200M")
+    MemorySize maxFileSize;
+
+    /**
+     * Writes a snapshot of the whole corpus. Records are pulled from the database as the output is consumed.
+     */
+    public void export(OutputStream out, boolean includeBlobs) throws IOException {
+        var started = System.currentTimeMillis();
+        long authors = 0;
+        long blobs = 0;
+        long knowledges = 0;
+        // The generator buffers, and the response is flushed as its buffer fills, not after every line.
+        var lines = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (var generator = objectMapper.getFactory().createGenerator(out); var session = driver.session()) {
+            writeLine(lines, generator, new SnapshotHeader(SnapshotHeader.KIND, SnapshotHeader.VERSION, Instant.now(), includeBlobs));
+
+            var authorResult = session.run(ALL_AUTHORS);
+            while (authorResult.hasNext()) {
+                var record = authorResult.next();
+                writeLine(lines, generator, new SnapshotAuthor(SnapshotAuthor.KIND, record.get("id").asString(), record.get("name").asString()));
+                authors++;
+            }
+
+            if (includeBlobs) {
+                var hashResult = session.run(ALL_FILE_HASHES);
+                while (hashResult.hasNext()) {
+                    var hash = hashResult.next().get("hash").asString();
+                    if (!blobStore.exists(hash)) {
+                        log.warn("Blob {} is missing from the blob store and is left out of the snapshot", hash);
+                        continue;
+                    }
+                    writeBlob(generator, hash);
+                    blobs++;
+                }
+            }
+
+            var knowledgeResult = session.run(ALL_KNOWLEDGES);
+            while (knowledgeResult.hasNext()) {
+                var record = knowledgeResult.next();
+                var node = record.get("k").asNode();
+                var knowledge = KnowledgeEntity.from(node, record.get("authors").asList(Value::asString));
+                knowledge.setSource(KnowledgeSource.from(node));
+                writeLine(lines, generator, SnapshotKnowledge.from(knowledge));
+                knowledges++;
+            }
+        }
+        log.info("Exported {} authors, {} blobs and {} documents in {} ms", authors, blobs, knowledges, System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Replays a snapshot into the graph and the blob store.
+     *
+     * @param includeBlobs whether to store the files of the snapshot; without them documents keep their file
+     *                     references, which resolve once the blob store is copied separately
+     * @throws IllegalArgumentException when the input is not a snapshot this version understands
+     */
+    public SnapshotImportResult importSnapshot(InputStream in, boolean includeBlobs) throws IOException {
+        var started = System.currentTimeMillis();
+        var authors = new ArrayList<Map<String, Object>>(importBatchSize);
+        var knowledges = new ArrayList<KnowledgeEntity>(importBatchSize);
+        long authorCount = 0;
+        long knowledgeCount = 0;
+        long blobCount = 0;
+        long skippedBlobs = 0;
+        var headerSeen = false;
+        try (var parser = objectMapper.getFactory().createParser(in)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IllegalArgumentException("Expected a JSON object at " + parser.currentLocation());
+                }
+                var kind = readKind(parser);
+                if (!headerSeen) {
+                    checkHeader(kind, readRest(parser, kind));
+                    headerSeen = true;
+                    continue;
+                }
+                switch (kind) {
+                    case SnapshotAuthor.KIND -> {
+                        var author = objectMapper.treeToValue(readRest(parser, kind), SnapshotAuthor.class);
+                        authors.add(Map.of("id", author.id(), "name", author.name()));
+                        if (authors.size() == importBatchSize) {
+                            authorCount += writeAuthors(authors);
+                        }
+                    }
+                    case BLOB_KIND -> {
+                        if (readBlob(parser, includeBlobs)) {
+                            blobCount++;
+                        } else {
+                            skippedBlobs++;
+                        }
+                    }
+                    case SnapshotKnowledge.KIND -> {
+                        // Documents reference authors by name, so pending authors have to be written first.
+                        authorCount += writeAuthors(authors);
+                        knowledges.add(objectMapper.treeToValue(readRest(parser, kind), SnapshotKnowledge.class).toEntity());
+                        if (knowledges.size() == importBatchSize) {
+                            knowledgeCount += writeKnowledges(knowledges);
+                        }
+                    }
+                    default -> throw new IllegalArgumentException("Unknown snapshot line kind: " + kind);
+                }
+            }
+        }
+        if (!headerSeen) {
+            throw new IllegalArgumentException("Snapshot is empty");
+        }
+        authorCount += writeAuthors(authors);
+        knowledgeCount += writeKnowledges(knowledges);
+        var result = new SnapshotImportResult(authorCount, knowledgeCount, blobCount, skippedBlobs, System.currentTimeMillis() - started);
+        log.info("Imported snapshot: {}", result);
+        return result;
+    }
+
+    private static void writeLine(ObjectWriter lines, JsonGenerator generator, Object line) throws IOException {
+        lines.writeValue(generator, line);
+        generator.writeRaw('\n');
+    }
+
+    private void writeBlob(JsonGenerator generator, String hash) throws IOException {
+        var path = blobStore.path(hash);
+        generator.writeStartObject();
+        generator.writeStringField("kind", BLOB_KIND);
+        generator.writeStringField("hash", hash);
+        generator.writeNumberField("size", Files.size(path));
+        generator.writeFieldName("data");
+        try (var data = Files.newInputStream(path)) {
+            generator.writeBinary(data, -1);
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    /**
+     * Reads the {@code kind} field, which every line starts with so that the rest can be dispatched on it.
+     */
+    private static String readKind(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.FIELD_NAME || !"kind".equals(parser.currentName()) || parser.nextToken() != JsonToken.VALUE_STRING) {
+            throw new IllegalArgumentException("Snapshot line does not start with its kind at " + parser.currentLocation());
+        }
+        return parser.getText();
+    }
+
+    /**
+     * Reads the remaining fields of the current object into a tree.
+     */
+    private ObjectNode readRest(JsonParser parser, String kind) throws IOException {
+        var node = objectMapper.createObjectNode().put("kind", kind);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var name = parser.currentName();
+            parser.nextToken();
+            node.set(name, parser.readValueAsTree());
+        }
+        return node;
+    }
+
+    private static void checkHeader(String kind, ObjectNode header) {
+        if (!SnapshotHeader.KIND.equals(kind)) {
+            throw new IllegalArgumentException("Snapshot does not start with a header line");
+        }
+        var version = header.path("version").asInt(-1);
+        if (version != SnapshotHeader.VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version " + version);
+        }
+    }
+
+    /**
+     * Streams the base64 content of a blob line into the store, unless blobs are skipped or already present.
+     *
+     * @return whether the blob was stored
+     */
+    private boolean readBlob(JsonParser parser, boolean includeBlobs) throws IOException {
+        String hash = null;
+        var stored = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var name = parser.currentName();
+            parser.nextToken();
+            if ("hash".equals(name)) {
+                hash = parser.getText();
+            } else if ("data".equals(name) && includeBlobs && hash != null && !blobStore.exists(hash)) {
+                var blob = blobStore.put(out -> parser.readBinaryValue(out), maxFileSize.asLongValue());
+                if (!blob.hash().equals(hash)) {
+                    throw new IllegalArgumentException("Content of blob " + hash + " hashes to " + blob.hash());
+                }
+                stored = true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return stored;
+    }
+
+    private int writeAuthors(List<Map<String, Object>> authors) {
+        if (authors.isEmpty()) {
+            return 0;
+        }
+        var rows = List.copyOf(authors);
+        try (var session = driver.session()) {
+            session.executeWrite(tx -> tx.run(MERGE_AUTHORS, Values.parameters("rows", rows)).consume());
+        }
+        authors.clear();
+        return rows.size();
+    }
+
+    private int writeKnowledges(List<KnowledgeEntity> knowledges) {
+        if (knowledges.isEmpty()) {
+            return 0;
+        }
+        var batch = List.copyOf(knowledges);
+        batchWriter.write(batch);
+        knowledges.clear();
+        return batch.size();
+    }
+}
@@ -0,0 +1,152 @@
+package ru.kamila.services;
+
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import ru.kamila.models.KnowledgeWrittenEvent;
+import ru.kamila.models.Suggestion;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Typeahead over document titles and author names, served from memory without a database round-trip. Authors are
+ * ranked by their number of works; a title counts as one.
+ * <p>
+ * The index is built from the graph in the background at startup, updated from {@link KnowledgeWrittenEvent} and
+ * rebuilt every {@code kamila.suggest.rebuild-interval}, which repairs updates lost to a failure.
+ * Until the first build finishes, suggestions are empty.
+ */
+@ApplicationScoped
+@Slf4j
+public class SuggestIndex {
+
+    private static final String ALL_TITLES = "MATCH (k:Knowledge) RETURN k.id AS id, k.title AS text";
+
+    private static final String ALL_AUTHORS = """
+            MATCH (a:Author)
+            RETURN a.id AS id, a.name AS text, COUNT { (a)<-[:WRITTEN_BY]-(:Knowledge) } AS works
+            """;
+
+    private static final String AUTHORS_BY_ID = """
+            MATCH (a:Author)
+            WHERE a.id IN $ids
+            RETURN a.id AS id, a.name AS text, COUNT { (a)<-[:WRITTEN_BY]-(:Knowledge) } AS works
+            """;
+
+    @Inject
+    Driver driver;
+
+    @ConfigProperty(name = "kamila.suggest.node-capacity", defaultValue = "10")
+    int nodeCapacity;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService updater = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "suggest-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile PrefixTrie trie;
+
+    void onStart(@Observes StartupEvent event) {
+        updater.execute(this::rebuild);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        updater.shutdownNow();
+    }
+
+    void onKnowledgeWritten(@Observes KnowledgeWrittenEvent event) {
+        var titles = event.knowledges().stream()
+                .map(knowledge -> new Suggestion(Suggestion.Kind.TITLE, knowledge.getId().toString(), knowledge.getTitle(), 1))
+                .toList();
+        var authorIds = List.copyOf(event.authorIds());
+        updater.execute(() -> {
+            var current = trie;
+            if (current == null) {
+                // The first build failed; the next one reads this write from the graph.
+                return;
+            }
+            try {
+                var authors = readSuggestions(AUTHORS_BY_ID, Values.parameters("ids", authorIds));
+                lock.writeLock().lock();
+                try {
+                    titles.forEach(current::put);
+                    authors.forEach(current::put);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } catch (Exception e) {
+                log.error("Failed to update suggestions for {} documents, the next rebuild will repair them", titles.size(), e);
+            }
+        });
+    }
+
+    @Scheduled(every = "${kamila.suggest.rebuild-interval:1h}", delayed = "${kamila.suggest.rebuild-interval:1h}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledRebuild() {
+        updater.execute(this::rebuild);
+    }
+
+    /**
+     * Returns at most {@code limit} suggestions, capped at {@code kamila.suggest.node-capacity}, for a query whose
+     * words are all matched as prefixes of title or name words.
+     */
+    public List<Suggestion> suggest(String query, int limit) {
+        var current = trie;
+        if (current == null) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            return current.suggest(query, Math.min(limit, nodeCapacity));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Builds a fresh trie from the graph and swaps it in. Runs on the updater thread, so no incremental update can
+     * be lost between the read and the swap.
+     */
+    private void rebuild() {
+        var started = System.currentTimeMillis();
+        try {
+            var rebuilt = new PrefixTrie(nodeCapacity);
+            readSuggestions(ALL_TITLES, Values.parameters()).forEach(rebuilt::put);
+            readSuggestions(ALL_AUTHORS, Values.parameters()).forEach(rebuilt::put);
+            trie = rebuilt;
+            log.info("Built the suggestion index with {} entries in {} ms", rebuilt.size(), System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            log.error("Failed to build the suggestion index", e);
+        }
+    }
+
+    private List<Suggestion> readSuggestions(String cypher, Value parameters) {
+        try (var session = driver.session()) {
+            return session.executeRead(tx -> tx.run(cypher, parameters).list(SuggestIndex::toSuggestion));
+        }
+    }
+
+    private static Suggestion toSuggestion(Record record) {
+        var author = record.containsKey("works");
+        return new Suggestion(
+                author ? Suggestion.Kind.AUTHOR : Suggestion.Kind.TITLE,
+                record.get("id").asString(),
+                record.get("text").asString(""),
+                author ? record.get("works").asInt() : 1);
+    }
+}
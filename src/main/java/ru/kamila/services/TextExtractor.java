@@ -0,0 +1,350 @@
+package ru.kamila.services;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.ContentHandlerDecorator;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Values;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import ru.kamila.models.KnowledgeWrittenEvent;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extracts the body text of downloaded documents with Apache Tika and stores it as chunked
+ * {@code (:Knowledge)-[:HAS_PASSAGE]->(:Passage {ordinal, text})} nodes covered by {@code passage_search_index}.
+ * Keeping the text on separate nodes leaves the {@code Knowledge} nodes small for every other query.
+ * <p>
+ * Extraction runs on a bounded pool off the request and ingestion threads. Each document is cut off after
+ * {@code kamila.extraction.max-pages} pages, {@code kamila.extraction.max-characters} characters or
+ * {@code kamila.extraction.timeout}, whichever comes first; what was extracted up to that point is kept. The parse
+ * itself runs on a separate thread that is interrupted and abandoned at the timeout, so a file on which the parser
+ * hangs before it emits any text does not hold an extraction worker. Tika rarely notices the interrupt, so an abandoned
+ * parse keeps its thread until it ends; at most {@code kamila.extraction.max-abandoned-parses} of them are tolerated,
+ * and while they hold every spare parser thread, documents are left to the backfill.
+ * Documents that could not be queued are picked up by the periodic backfill. A document whose file cannot be
+ * extracted, e.g. because its blob is missing or the file is corrupt, is marked with {@code textError} set to that
+ * file's hash and left out of the backfill until its file changes.
+ */
+@ApplicationScoped
+@Slf4j
+public class TextExtractor {
+
+    @Inject
+    Driver driver;
+
+    @Inject
+    BlobStore blobStore;
+
+    @ConfigProperty(name = "kamila.extraction.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "kamila.extraction.threads", defaultValue = "2")
+    int threads;
+
+    @ConfigProperty(name = "kamila.extraction.queue-capacity", defaultValue = "500")
+    int queueCapacity;
+
+    @ConfigProperty(name = "kamila.extraction.timeout", defaultValue = "60s")
+    Duration timeout;
+
+    @ConfigProperty(name = "kamila.extraction.max-pages", defaultValue = "200")
+    int maxPages;
+
+    @ConfigProperty(name = "kamila.extraction.max-characters", defaultValue = "2000000")
+    int maxCharacters;
+
+    @ConfigProperty(name = "kamila.extraction.passage-size", defaultValue = "2000")
+    int passageSize;
+
+    @ConfigProperty(name = "kamila.extraction.backfill-batch-size", defaultValue = "100")
+    int backfillBatchSize;
+
+    @ConfigProperty(name = "kamila.extraction.max-abandoned-parses", defaultValue = "2")
+    int maxAbandonedParses;
+
+    private final AutoDetectParser parser = new AutoDetectParser();
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private ThreadPoolExecutor workers;
+    private ThreadPoolExecutor parsers;
+
+    @PostConstruct
+    void init() {
+        var counter = new AtomicInteger();
+        workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            var thread = new Thread(runnable, "text-extractor-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        // One thread per worker, plus a few that abandoned parses may keep; no queue, a parse starts now or not at all.
+        var parserCounter = new AtomicInteger();
+        parsers = new ThreadPoolExecutor(0, threads + maxAbandonedParses, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            var thread = new Thread(runnable, "text-parser-" + parserCounter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+        parsers.shutdownNow();
+    }
+
+    void onKnowledgeWritten(@Observes KnowledgeWrittenEvent event) {
+        if (!enabled) {
+            return;
+        }
+        for (var knowledge : event.knowledges()) {
+            if (knowledge.getFileHash() != null) {
+                enqueue(knowledge.getId().toString(), knowledge.getFileHash());
+            }
+        }
+    }
+
+    @Scheduled(every = "${kamila.extraction.backfill-interval:10m}", delayed = "1m",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void backfill() {
+        if (!enabled) {
+            return;
+        }
+        try (var session = driver.session()) {
+            var pending = session.executeRead(tx -> tx.run("""
+                            MATCH (k:Knowledge)
+                            WHERE k.fileHash IS NOT NULL AND (k.textHash IS NULL OR k.textHash <> k.fileHash)
+                              AND (k.textError IS NULL OR k.textError <> k.fileHash)
+                            RETURN k.id AS id, k.fileHash AS fileHash
+                            ORDER BY k.id
+                            LIMIT $limit
+                            """, Values.parameters("limit", backfillBatchSize))
+                    .list(record -> List.of(record.get("id").asString(), record.get("fileHash").asString())));
+            pending.forEach(row -> enqueue(row.get(0), row.get(1)));
+            if (!pending.isEmpty()) {
+                log.info("Queued {} documents for text extraction backfill", pending.size());
+            }
+        }
+    }
+
+    private void enqueue(String knowledgeId, String fileHash) {
+        if (!queued.add(knowledgeId)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    extract(knowledgeId, fileHash);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    log.error("Text extraction failed for knowledge {}", knowledgeId, e);
+                    markFailed(knowledgeId, fileHash);
+                } finally {
+                    queued.remove(knowledgeId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(knowledgeId);
+            log.debug("Extraction queue is full, knowledge {} is left to the backfill", knowledgeId);
+        }
+    }
+
+    private void extract(String knowledgeId, String fileHash) throws Exception {
+        if (!blobStore.exists(fileHash)) {
+            log.warn("Blob {} of knowledge {} is missing, skipping text extraction", fileHash, knowledgeId);
+            markFailed(knowledgeId, fileHash);
+            return;
+        }
+        var started = System.nanoTime();
+        var text = new StringWriter();
+        var handler = new LimitingContentHandler(new BodyContentHandler(text), maxPages, maxCharacters,
+                started + timeout.toNanos());
+        Future<?> parse;
+        try {
+            parse = parsers.submit(() -> {
+                try (var in = Files.newInputStream(blobStore.path(fileHash))) {
+                    parser.parse(in, handler, new Metadata(), new ParseContext());
+                }
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Every parser thread is held by an abandoned parse, knowledge {} is left to the backfill", knowledgeId);
+            return;
+        }
+        try {
+            parse.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            parse.cancel(true);
+            log.info("Stopped extracting knowledge {} early: timeout reached", knowledgeId);
+        } catch (ExecutionException e) {
+            if (!LimitingContentHandler.isLimitReached(e.getCause())) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+            log.info("Stopped extracting knowledge {} early: {}", knowledgeId, handler.getStopReason());
+        }
+
+        var passages = toPassages(text.toString());
+        try (var session = driver.session()) {
+            session.executeWrite(tx -> tx.run("""
+                            MATCH (k:Knowledge {id: $id})
+                            CALL {
+                              WITH k
+                              OPTIONAL MATCH (k)-[:HAS_PASSAGE]->(old:Passage)
+                              DETACH DELETE old
+                            }
+                            SET k.textHash = $fileHash,
+                                k.textPages = $pages,
+                                k.textError = null
+                            WITH k
+                            UNWIND range(0, size($passages) - 1) AS ordinal
+                            CREATE (k)-[:HAS_PASSAGE]->(:Passage {ordinal: ordinal, text: $passages[ordinal]})
+                            """,
+                    Values.parameters("id", knowledgeId, "fileHash", fileHash, "pages", handler.getPages(), "passages", passages)).consume());
+        }
+        log.info("Extracted {} passages ({} pages) from knowledge {} in {} ms", passages.size(), handler.getPages(),
+                knowledgeId, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Keeps the backfill from picking the document again until its file changes.
+     */
+    private void markFailed(String knowledgeId, String fileHash) {
+        try (var session = driver.session()) {
+            session.executeWrite(tx -> tx.run("""
+                            MATCH (k:Knowledge {id: $id})
+                            SET k.textError = $fileHash
+                            """,
+                    Values.parameters("id", knowledgeId, "fileHash", fileHash)).consume());
+        } catch (Exception e) {
+            log.warn("Could not mark text extraction of knowledge {} as failed", knowledgeId, e);
+        }
+    }
+
+    /**
+     * Splits text into passages of roughly {@code passageSize} characters, breaking on whitespace.
+     */
+    List<String> toPassages(String text) {
+        var normalized = text.replaceAll("\\s+", " ").trim();
+        var passages = new ArrayList<String>();
+        var start = 0;
+        while (start < normalized.length()) {
+            var end = Math.min(start + passageSize, normalized.length());
+            if (end < normalized.length()) {
+                var space = normalized.lastIndexOf(' ', end);
+                if (space > start) {
+                    end = space;
+                }
+            }
+            passages.add(normalized.substring(start, end).trim());
+            start = end + 1;
+        }
+        return passages;
+    }
+
+    /**
+     * Stops the parse by throwing from a SAX callback once a page, size or time budget is used up. Tika's PDF parser
+     * emits one {@code <div class="page">} per page, which also makes the deadline check run at least once per page.
+     * The deadline only ends a parse that is still producing events; one that is stuck in between is abandoned by
+     * {@link #extract} instead. The counters are volatile, since they are read by the worker after it abandons a parse.
+     */
+    static final class LimitingContentHandler extends ContentHandlerDecorator {
+        private final int maxPages;
+        private final int maxCharacters;
+        private final long deadlineNanos;
+        private volatile int pages;
+        private volatile int characters;
+        private volatile String stopReason;
+
+        LimitingContentHandler(org.xml.sax.ContentHandler handler, int maxPages, int maxCharacters, long deadlineNanos) {
+            super(handler);
+            this.maxPages = maxPages;
+            this.maxCharacters = maxCharacters;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String name, Attributes atts) throws SAXException {
+            if ("div".equals(localName) && "page".equals(atts.getValue("class")) && ++pages > maxPages) {
+                stop("page limit of " + maxPages + " reached");
+            }
+            checkDeadline();
+            super.startElement(uri, localName, name, atts);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            checkDeadline();
+            var remaining = maxCharacters - characters;
+            if (length > remaining) {
+                super.characters(ch, start, remaining);
+                characters = maxCharacters;
+                stop("character limit of " + maxCharacters + " reached");
+            }
+            characters += length;
+            super.characters(ch, start, length);
+        }
+
+        int getPages() {
+            return Math.min(pages, maxPages);
+        }
+
+        String getStopReason() {
+            return stopReason;
+        }
+
+        private void checkDeadline() throws SAXException {
+            if (System.nanoTime() > deadlineNanos) {
+                stop("timeout reached");
+            }
+        }
+
+        private void stop(String reason) throws SAXException {
+            stopReason = reason;
+            throw new LimitReachedException(reason);
+        }
+
+        static boolean isLimitReached(Throwable e) {
+            for (var cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof LimitReachedException) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class LimitReachedException extends SAXException {
+        LimitReachedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -10,6 +10,28 @@ interface KnowledgeEntity {
     type: string;
 }
 
+interface KnowledgePage {
+    items: KnowledgeEntity[];
+    nextCursor: string | null;
+}
+
+interface Suggestion {
+    kind: 'TITLE' | 'AUTHOR';
+    id: string;
+    text: string;
+    weight: number;
+}
+
+const PAGE_SIZE = 12;
+
+// Постраничная загрузка по курсору: стоимость запроса не растёт с глубиной прокрутки.
+const fetchKnowledgePage = async (query: string, cursor: string): Promise<KnowledgePage> => {
+    const params = new URLSearchParams({cursor, size: String(PAGE_SIZE)});
+    if (query) params.set('search', query);
+    const response = await fetch(`/api/v1/knowledge?${params}`);
+    if (!response.ok) throw new Error('Не удалось получить данные с сервера.');
+    return response.json();
+};
 
 const Spinner: React.FC = () => (
     <div className="flex justify-center items-center p-8">
@@ -29,18 +51,34 @@ interface KnowledgeItemProps {
     onSelect: (id: string) => void;
 }
 
-const KnowledgeItem: React.FC<KnowledgeItemProps> = ({item, onSelect}) => (
-    <div
-        className="bg-white p-4 rounded-lg shadow-md hover:shadow-lg transition-shadow cursor-pointer border border-gray-200"
-        onClick={() => onSelect(item.id)}
-    >
-        <h3 className="text-lg font-bold text-gray-800 truncate">{item.title}</h3>
-        <p className="text-sm text-gray-600 mt-1">
-            {item.authors.join(', ')} - <span className="text-gray-500">{item.creationDate}</span>
-        </p>
-        <p className="text-sm text-gray-700 mt-2 line-clamp-2">{item.summary}</p>
-    </div>
-);
+const KnowledgeItem: React.FC<KnowledgeItemProps> = ({item, onSelect}) => {
+    // Превью рендерится в фоне после загрузки; пока его нет (или файл не PDF), карточка без картинки.
+    const [hasPreview, setHasPreview] = useState(true);
+
+    return (
+        <div
+            className="bg-white p-4 rounded-lg shadow-md hover:shadow-lg transition-shadow cursor-pointer border border-gray-200 flex gap-4"
+            onClick={() => onSelect(item.id)}
+        >
+            {hasPreview && (
+                <img
+                    src={`/api/v1/knowledge/${item.id}/preview`}
+                    alt=""
+                    loading="lazy"
+                    onError={() => setHasPreview(false)}
+                    className="w-16 h-auto self-start border rounded-sm"
+                />
+            )}
+            <div className="min-w-0">
+                <h3 className="text-lg font-bold text-gray-800 truncate">{item.title}</h3>
+                <p className="text-sm text-gray-600 mt-1">
+                    {item.authors.join(', ')} - <span className="text-gray-500">{item.creationDate}</span>
+                </p>
+                <p className="text-sm text-gray-700 mt-2 line-clamp-2">{item.summary}</p>
+            </div>
+        </div>
+    );
+};
 
 interface KnowledgeDetailProps {
     item: KnowledgeEntity;
@@ -56,54 +94,75 @@ const KnowledgeDetail: React.FC<KnowledgeDetailProps> = ({
                                                              onBack,
                                                              onSelectRecommendation,
                                                              isLoadingRecommendations
-                                                         }) => (
-    <div className="bg-white p-6 rounded-lg shadow-xl animate-fade-in">
-        <div className="flex justify-between items-start">
-            <button onClick={onBack} className="mb-4 text-blue-600 hover:underline">
-                &larr; К списку
-            </button>
-            <a
-                href={`/api/v1/knowledge/${item.id}/download`}
-                target="_blank"
-                rel="noopener noreferrer"
-                className="bg-purple-600 text-white font-bold px-4 py-2 rounded-md hover:bg-purple-700 transition-colors"
-            >
-                Скачать файл
-            </a>
-        </div>
-
-        <h1 className="text-3xl font-bold text-gray-900 mt-2">{item.title}</h1>
-        <p className="text-lg text-gray-600 mt-2">
-            {item.authors.join(', ')}
-        </p>
-        <p className="text-md text-gray-500">{item.creationDate} &bull; {item.type}</p>
+                                                         }) => {
+    const [isViewerOpen, setIsViewerOpen] = useState(false);
 
-        <div className="mt-6 pt-6 border-t">
-            <h2 className="text-xl font-semibold text-gray-800">Аннотация</h2>
-            <p className="mt-2 text-gray-700 leading-relaxed whitespace-pre-wrap">{item.summary}</p>
-        </div>
-
-        <div className="mt-6 pt-6 border-t">
-            <h2 className="text-xl font-semibold text-gray-800">Рекомендации</h2>
-            {isLoadingRecommendations ? <Spinner/> : (
-                <div className="mt-2 space-y-3">
-                    {recommendations.length > 0 ? (
-                        recommendations.map(rec => (
-                            <div
-                                key={rec.id}
-                                className="bg-blue-50 p-3 rounded-md hover:bg-blue-100 cursor-pointer"
-                                onClick={() => onSelectRecommendation(rec.id)}
-                            >
-                                <p className="font-semibold text-blue-800">{rec.title}</p>
-                                <p className="text-sm text-blue-600">{rec.authors.join(', ')}</p>
-                            </div>
-                        ))
-                    ) : <p className="text-gray-500">Рекомендации не найдены.</p>}
+    return (
+        <div className="bg-white p-6 rounded-lg shadow-xl animate-fade-in">
+            <div className="flex justify-between items-start">
+                <button onClick={onBack} className="mb-4 text-blue-600 hover:underline">
+                    &larr; К списку
+                </button>
+                <div className="flex gap-2">
+                    <button
+                        onClick={() => setIsViewerOpen(open => !open)}
+                        className="bg-gray-100 text-purple-700 font-bold px-4 py-2 rounded-md hover:bg-gray-200 transition-colors"
+                    >
+                        {isViewerOpen ? 'Скрыть файл' : 'Просмотреть файл'}
+                    </button>
+                    <a
+                        href={`/api/v1/knowledge/${item.id}/download`}
+                        target="_blank"
+                        rel="noopener noreferrer"
+                        className="bg-purple-600 text-white font-bold px-4 py-2 rounded-md hover:bg-purple-700 transition-colors"
+                    >
+                        Скачать файл
+                    </a>
                 </div>
+            </div>
+
+            {isViewerOpen && (
+                // Встроенный просмотрщик браузера сам запрашивает нужные страницы через Range-запросы.
+                <iframe
+                    src={`/api/v1/knowledge/${item.id}/download?inline=true`}
+                    title={item.title}
+                    className="w-full h-[80vh] mt-4 border rounded-md"
+                />
             )}
+
+            <h1 className="text-3xl font-bold text-gray-900 mt-2">{item.title}</h1>
+            <p className="text-lg text-gray-600 mt-2">
+                {item.authors.join(', ')}
+            </p>
+            <p className="text-md text-gray-500">{item.creationDate} &bull; {item.type}</p>
+
+            <div className="mt-6 pt-6 border-t">
+                <h2 className="text-xl font-semibold text-gray-800">Аннотация</h2>
+                <p className="mt-2 text-gray-700 leading-relaxed whitespace-pre-wrap">{item.summary}</p>
+            </div>
+
+            <div className="mt-6 pt-6 border-t">
+                <h2 className="text-xl font-semibold text-gray-800">Рекомендации</h2>
+                {isLoadingRecommendations ? <Spinner/> : (
+                    <div className="mt-2 space-y-3">
+                        {recommendations.length > 0 ? (
+                            recommendations.map(rec => (
+                                <div
+                                    key={rec.id}
+                                    className="bg-blue-50 p-3 rounded-md hover:bg-blue-100 cursor-pointer"
+                                    onClick={() => onSelectRecommendation(rec.id)}
+                                >
+                                    <p className="font-semibold text-blue-800">{rec.title}</p>
+                                    <p className="text-sm text-blue-600">{rec.authors.join(', ')}</p>
+                                </div>
+                            ))
+                        ) : <p className="text-gray-500">Рекомендации не найдены.</p>}
+                    </div>
+                )}
+            </div>
         </div>
-    </div>
-);
+    );
+};
 
 
 function App() {
@@ -115,18 +174,22 @@ function App() {
     const [isLoading, setIsLoading] = useState(true);
     const [isLoadingRecommendations, setIsLoadingRecommendations] = useState(false);
     const [error, setError] = useState<string | null>(null);
+    const [nextCursor, setNextCursor] = useState<string | null>(null);
+    const [activeQuery, setActiveQuery] = useState('');
+    const [isLoadingMore, setIsLoadingMore] = useState(false);
+    const [suggestions, setSuggestions] = useState<Suggestion[]>([]);
     const formRef = useRef<HTMLFormElement>(null);
+    const sentinelRef = useRef<HTMLDivElement>(null);
 
 
     const fetchKnowledges = useCallback(async (query = '') => {
         setIsLoading(true);
         setError(null);
         try {
-            const url = query ? `/api/v1/knowledge?search=${encodeURIComponent(query)}` : '/api/v1/knowledge';
-            const response = await fetch(url);
-            if (!response.ok) throw new Error('Не удалось получить данные с сервера.');
-            const data = await response.json();
-            setKnowledges(data);
+            const page = await fetchKnowledgePage(query, '');
+            setKnowledges(page.items);
+            setNextCursor(page.nextCursor);
+            setActiveQuery(query);
         } catch (err: any) {
             setError(err.message);
         } finally {
@@ -134,6 +197,20 @@ function App() {
         }
     }, []);
 
+    const loadMoreKnowledges = useCallback(async () => {
+        if (!nextCursor || isLoadingMore) return;
+        setIsLoadingMore(true);
+        try {
+            const page = await fetchKnowledgePage(activeQuery, nextCursor);
+            setKnowledges(prev => [...prev, ...page.items]);
+            setNextCursor(page.nextCursor);
+        } catch (err: any) {
+            setError(err.message);
+        } finally {
+            setIsLoadingMore(false);
+        }
+    }, [nextCursor, isLoadingMore, activeQuery]);
+
     const fetchKnowledgeDetails = async (id: string) => {
         setIsLoading(true);
         setError(null);
@@ -170,6 +247,31 @@ function App() {
         fetchKnowledges();
     }, [fetchKnowledges]);
 
+    useEffect(() => {
+        const sentinel = sentinelRef.current;
+        if (!sentinel || !nextCursor) return;
+        const observer = new IntersectionObserver(entries => {
+            if (entries[0].isIntersecting) loadMoreKnowledges();
+        }, {rootMargin: '200px'});
+        observer.observe(sentinel);
+        return () => observer.disconnect();
+    }, [loadMoreKnowledges, nextCursor, selectedKnowledge, isLoading]);
+
+
+    // Подсказки приходят из индекса в памяти сервера, поэтому их можно запрашивать на каждое нажатие клавиши.
+    useEffect(() => {
+        const query = searchTerm.trim();
+        if (!query) {
+            setSuggestions([]);
+            return;
+        }
+        const controller = new AbortController();
+        fetch(`/api/v1/knowledge/suggest?${new URLSearchParams({q: query, limit: '8'})}`, {signal: controller.signal})
+            .then(response => response.ok ? response.json() : [])
+            .then(setSuggestions)
+            .catch(() => {});
+        return () => controller.abort();
+    }, [searchTerm]);
 
     const handleSearch = (e: React.FormEvent) => {
         e.preventDefault();
@@ -275,9 +377,17 @@ function App() {
                                         id="search"
                                         value={searchTerm}
                                         onChange={(e) => setSearchTerm(e.target.value)}
+                                        list="search-suggestions"
+                                        autoComplete="off"
                                         placeholder="Поиск по названию, аннотации или автору..."
                                         className="flex-grow w-full px-3 py-2 border border-gray-300 rounded-md focus:outline-none focus:ring-2 focus:ring-blue-500"
                                     />
+                                    <datalist id="search-suggestions">
+                                        {suggestions.map(suggestion => (
+                                            <option key={`${suggestion.kind}:${suggestion.id}`} value={suggestion.text}
+                                                    label={suggestion.kind === 'AUTHOR' ? 'Автор' : 'Документ'}/>
+                                        ))}
+                                    </datalist>
                                     <button type="submit"
                                             className="bg-green-600 text-white font-bold px-4 py-2 rounded-md hover:bg-green-700 transition-colors">Поиск
                                     </button>
@@ -294,6 +404,9 @@ function App() {
                                         ))}
                                     </div>
                                 )}
+                                {nextCursor && !isLoading && (
+                                    <div ref={sentinelRef}>{isLoadingMore && <Spinner/>}</div>
+                                )}
                                 {knowledges.length === 0 && !isLoading && (
                                     <p className="text-center text-gray-500 py-8">Документы не найдены. Попробуйте
                                         другой запрос или добавьте новый документ.</p>
@@ -0,0 +1,168 @@
+package ru.kamila.resources;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.response.ValidatableResponse;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import ru.kamila.services.SnapshotService;
+
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@QuarkusTest
+class SnapshotResourceTest {
+    // Above the 10M default of quarkus.http.limits.max-body-size, like any real corpus.
+    private static final int BLOB_SIZE = 12 * 1024 * 1024;
+    private static final List<String> COMPARED_FIELDS = List.of("handle", "creationDate", "issuerId", "summary", "title",
+            "type", "fileHash", "fileSize");
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Test
+    void exportedSnapshotImportsBackUnchanged() throws Exception {
+        var run = UUID.randomUUID().toString();
+        var firstAuthor = "Иванов И. И. " + run;
+        var secondAuthor = "Петрова П. П. " + run;
+        var blob = new byte[BLOB_SIZE];
+        new Random(42).nextBytes(blob);
+        var hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(blob));
+
+        var documents = List.of(
+                knowledge("test/" + run + "-1", List.of(firstAuthor, secondAuthor), 2021).put("fileHash", hash).put("fileSize", blob.length),
+                // Ingested before handles were stored.
+                knowledge(null, List.of(firstAuthor), 0),
+                knowledge("test/" + run + "-3", List.of(secondAuthor), null));
+        var lines = new StringBuilder()
+                .append(line(objectMapper.createObjectNode().put("kind", "snapshot").put("version", 1)
+                        .put("createdAt", "2025-01-01T00:00:00Z").put("blobs", true)))
+                .append(line(objectMapper.createObjectNode().put("kind", "author").put("id", UUID.randomUUID().toString()).put("name", firstAuthor)))
+                .append(line(objectMapper.createObjectNode().put("kind", "author").put("id", UUID.randomUUID().toString()).put("name", secondAuthor)))
+                .append(line(objectMapper.createObjectNode().put("kind", "blob").put("hash", hash).put("size", blob.length)
+                        .put("data", Base64.getEncoder().encodeToString(blob))));
+        documents.forEach(document -> lines.append(line(document)));
+
+        importSnapshot(lines.toString())
+                .body("authors", equalTo(2))
+                .body("knowledges", equalTo(3));
+
+        var ids = documents.stream().map(document -> document.get("id").asText()).collect(Collectors.toSet());
+        var exported = exportSnapshot();
+        var exportedDocuments = knowledges(exported, ids);
+        assertEquals(3, exportedDocuments.size());
+        for (var document : documents) {
+            var copy = exportedDocuments.get(document.get("id").asText());
+            assertNotNull(copy, "document " + document.get("id") + " was not exported");
+            // A missing creation date is stored as 0, like for an item page without one.
+            var expected = document.get("creationDate").isNull() ? document.deepCopy().put("creationDate", 0) : document;
+            for (var field : COMPARED_FIELDS) {
+                assertEquals(value(expected, field), value(copy, field), field + " of " + document.get("id"));
+            }
+            assertEquals(names(document), names(copy));
+        }
+        var exportedBlob = exported.stream().filter(line -> hash.equals(line.path("hash").asText())).findFirst().orElseThrow();
+        assertEquals(Base64.getEncoder().encodeToString(blob), exportedBlob.get("data").asText());
+
+        // The export is a valid snapshot in turn, and importing it changes nothing.
+        importSnapshot(exported.stream().map(this::line).collect(Collectors.joining()))
+                .body("knowledges", equalTo((int) exported.stream().filter(line -> "knowledge".equals(line.get("kind").asText())).count()));
+        assertEquals(exportedDocuments, knowledges(exportSnapshot(), ids));
+    }
+
+    @Test
+    void otherRequestsKeepTheDefaultBodyLimit() {
+        given()
+                .contentType("application/json")
+                .body("{\"url\": \"" + "x".repeat(11 * 1024 * 1024) + "\"}")
+                .when().post("/api/v1/knowledge")
+                .then()
+                .statusCode(413);
+    }
+
+    private ValidatableResponse importSnapshot(String snapshot) {
+        return given()
+                .contentType(SnapshotService.MEDIA_TYPE)
+                .body(snapshot)
+                .when().post("/api/v1/snapshot")
+                .then()
+                .statusCode(200);
+    }
+
+    private List<JsonNode> exportSnapshot() throws JsonProcessingException {
+        var body = given()
+                .queryParam("blobs", true)
+                .when().get("/api/v1/snapshot")
+                .then()
+                .statusCode(200)
+                .extract().asString();
+        var lines = new ArrayList<JsonNode>();
+        for (var line : body.split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private static Map<String, JsonNode> knowledges(List<JsonNode> lines, Set<String> ids) {
+        var knowledges = new HashMap<String, JsonNode>();
+        for (var line : lines) {
+            if ("knowledge".equals(line.get("kind").asText()) && ids.contains(line.get("id").asText())) {
+                knowledges.put(line.get("id").asText(), line);
+            }
+        }
+        return knowledges;
+    }
+
+    private ObjectNode knowledge(String handle, List<String> authors, Integer creationDate) {
+        var knowledge = objectMapper.createObjectNode()
+                .put("kind", "knowledge")
+                .put("id", UUID.randomUUID().toString())
+                .put("handle", handle)
+                .put("creationDate", creationDate)
+                .put("issuerId", "1234-5678")
+                .put("summary", "Аннотация " + handle)
+                .put("title", "Название " + handle)
+                .put("type", "Статья");
+        authors.forEach(knowledge.putArray("authors")::add);
+        return knowledge;
+    }
+
+    private static JsonNode value(JsonNode line, String field) {
+        var value = line.get(field);
+        return value == null ? NullNode.getInstance() : value;
+    }
+
+    private static Set<String> names(JsonNode line) {
+        var names = new HashSet<String>();
+        line.get("authors").forEach(name -> names.add(name.asText()));
+        return names;
+    }
+
+    private String line(JsonNode node) {
+        try {
+            return objectMapper.writeValueAsString(node) + "\n";
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package ru.kamila.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.faulttolerance.exceptions.BulkheadException;
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
+import org.eclipse.microprofile.faulttolerance.exceptions.TimeoutException;
+import org.jsoup.HttpStatusException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the gateway's fault-tolerance policies against a local repository stub that can be made slow or failing. The
+ * policies are shortened by {@link ShortPolicies} so that the tests do not wait for production delays.
+ */
+@QuarkusTest
+@TestProfile(DspaceGatewayTest.ShortPolicies.class)
+class DspaceGatewayTest {
+    private static final String GATEWAY = "ru.kamila.services.DspaceGateway";
+    private static final int FILE_HEAD_BULKHEAD = 8;
+    private static final Duration STALL = Duration.ofSeconds(5);
+
+    private static HttpServer server;
+    private static final AtomicBoolean failing = new AtomicBoolean();
+    private static final AtomicInteger flakyHits = new AtomicInteger();
+    private static final AtomicInteger heldCalls = new AtomicInteger();
+    private static volatile CountDownLatch release = new CountDownLatch(0);
+
+    @Inject
+    DspaceGateway gateway;
+
+    public static class ShortPolicies implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                    GATEWAY + "/fetchPage/Timeout/value", "500",
+                    GATEWAY + "/fetchPage/Timeout/unit", "MILLIS",
+                    GATEWAY + "/fetchDocument/CircuitBreaker/requestVolumeThreshold", "4",
+                    GATEWAY + "/fetchDocument/CircuitBreaker/delay", "500",
+                    GATEWAY + "/fetchDocument/CircuitBreaker/delayUnit", "MILLIS",
+                    GATEWAY + "/fetchDocument/Retry/maxRetries", "0",
+                    "kamila.upstream.read-timeout", "1s");
+        }
+    }
+
+    @BeforeAll
+    static void startRepository() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // One thread per exchange, so that held calls do not queue up behind each other.
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/stalled", exchange -> {
+            try (exchange) {
+                sleep(STALL);
+                respond(exchange, 200);
+            }
+        });
+        server.createContext("/flaky", exchange -> {
+            try (exchange) {
+                flakyHits.incrementAndGet();
+                respond(exchange, failing.get() ? 500 : 200);
+            }
+        });
+        server.createContext("/held", exchange -> {
+            try (exchange) {
+                heldCalls.incrementAndGet();
+                try {
+                    release.await(STALL.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                respond(exchange, 200);
+            }
+        });
+        server.start();
+    }
+
+    @AfterAll
+    static void stopRepository() {
+        server.stop(0);
+    }
+
+    @Test
+    void stalledPageFailsAtTheCallTimeout() {
+        var started = System.nanoTime();
+
+        assertThrows(TimeoutException.class, () -> gateway.fetchPage(url("/stalled"), Map.of(), response -> response.body()));
+
+        // Well before the repository would have answered: the call fails at its timeout, or at the socket read
+        // timeout where the call timeout cannot interrupt a blocked read.
+        var elapsed = Duration.ofNanos(System.nanoTime() - started);
+        assertTrue(elapsed.compareTo(STALL.dividedBy(2)) < 0, "the call took " + elapsed);
+    }
+
+    @Test
+    void circuitOpensOnFailuresAndClosesAfterProbes() throws Exception {
+        failing.set(true);
+        try {
+            for (int i = 0; i < 4; i++) {
+                assertThrows(HttpStatusException.class, () -> gateway.fetchDocument(url("/flaky")));
+            }
+            var hits = flakyHits.get();
+            assertThrows(CircuitBreakerOpenException.class, () -> gateway.fetchDocument(url("/flaky")));
+            assertEquals(hits, flakyHits.get(), "an open circuit let a call through to the repository");
+        } finally {
+            failing.set(false);
+        }
+
+        // After the delay the circuit is half-open, and two successful probes close it.
+        Thread.sleep(600);
+        gateway.fetchDocument(url("/flaky"));
+        gateway.fetchDocument(url("/flaky"));
+        for (int i = 0; i < 4; i++) {
+            gateway.fetchDocument(url("/flaky"));
+        }
+    }
+
+    @Test
+    void fullBulkheadRejectsAtOnceAndReadsStayFast() throws Exception {
+        release = new CountDownLatch(1);
+        heldCalls.set(0);
+        ExecutorService callers = Executors.newFixedThreadPool(FILE_HEAD_BULKHEAD);
+        var held = new ArrayList<Future<?>>();
+        try {
+            for (int i = 0; i < FILE_HEAD_BULKHEAD; i++) {
+                held.add(callers.submit(() -> gateway.fileHead(url("/held")).close()));
+            }
+            assertTimeoutPreemptively(STALL, () -> {
+                while (heldCalls.get() < FILE_HEAD_BULKHEAD) {
+                    Thread.sleep(10);
+                }
+            });
+
+            var started = System.nanoTime();
+            assertThrows(BulkheadException.class, () -> gateway.fileHead(url("/held")));
+            assertTrue(Duration.ofNanos(System.nanoTime() - started).compareTo(Duration.ofSeconds(1)) < 0,
+                    "the rejected call waited for a slot");
+
+            // Requests that only read the graph do not wait for the repository.
+            given()
+                    .when().get("/api/v1/knowledge")
+                    .then()
+                    .statusCode(200)
+                    .time(lessThan(2000L));
+        } finally {
+            release.countDown();
+            callers.shutdown();
+        }
+        for (var call : held) {
+            call.get(STALL.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException {
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        var body = "<html><body>ok</body></html>".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
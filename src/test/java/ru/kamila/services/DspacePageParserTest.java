@@ -0,0 +1,97 @@
+package ru.kamila.services;
+
+import org.jsoup.Jsoup;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.junit.jupiter.api.Test;
+import ru.kamila.models.DspaceMetadata;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DspacePageParserTest {
+    private static final String ITEM_URL = "https://dspace.kpfu.ru/xmlui/handle/net/160512";
+
+    @Test
+    void streamAndDocumentParsersAgreeOnAFullItemPage() throws IOException {
+        var html = fixture();
+        var metadata = parseBothWays(html);
+
+        assertEquals("net/160512", metadata.handle());
+        assertEquals(List.of("Иванов, Иван Петрович", "Петрова, Анна Сергеевна", "Сидоров, Алексей Викторович",
+                "Гарипов, Ринат Ильдарович", "Хасанова, Лилия Маратовна", "Smith, John"), metadata.authors());
+        assertEquals(2020, metadata.creationDate());
+        assertEquals("2541-7746", metadata.issuerId());
+        assertEquals("Графовые модели научных коллабораций в институциональном репозитории", metadata.title());
+        assertEquals("Article", metadata.type());
+        assertEquals("https://dspace.kpfu.ru/xmlui/bitstream/handle/net/160512/F_Graph_models.pdf?sequence=1&isAllowed=y",
+                metadata.fileDownloadUrl());
+    }
+
+    @Test
+    void fullCitationDateWinsOverIssuedYear() throws IOException {
+        var html = fixture().replace("<meta name=\"citation_date\" content=\"2020\">",
+                "<meta name=\"citation_date\" content=\"2021-05-12\">");
+
+        assertEquals(2021, parseBothWays(html).creationDate());
+    }
+
+    @Test
+    void fileLinkFallsBackToTheBodyInBothParsers() throws IOException {
+        var html = fixture().replaceAll("<meta name=\"citation_pdf_url\"[^>]*>", "");
+
+        assertNotNull(parseBothWays(html).fileDownloadUrl());
+    }
+
+    @Test
+    void yearIsFoundInBareIsoAndLocalizedDates() {
+        assertEquals(2020, DspacePageParser.parseYear("2020"));
+        assertEquals(2021, DspacePageParser.parseYear("2021-05-12"));
+        assertEquals(2021, DspacePageParser.parseYear("12.05.2021"));
+        assertNull(DspacePageParser.parseYear("б. г."));
+    }
+
+    @Test
+    void handleIsPrefixAndSuffixOfTheItemPath() {
+        assertEquals("net/160512", DspacePageParser.handleFromUrl("https://dspace.kpfu.ru/xmlui/handle/net/160512"));
+        assertEquals("net/160512", DspacePageParser.handleFromUrl("https://dspace.kpfu.ru/xmlui/handle/net/160512/"));
+        assertEquals("net/160512", DspacePageParser.handleFromUrl("https://dspace.kpfu.ru/xmlui/handle/net/160512?show=full"));
+        assertEquals("net/160512", DspacePageParser.handleFromUrl("https://dspace.kpfu.ru/xmlui/handle/net/160512#top"));
+        assertEquals("net/lt-7", DspacePageParser.handleFromUrl("http://127.0.0.1:8081/xmlui/handle/net/lt-7"));
+    }
+
+    @Test
+    void urlWithoutHandleIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> DspacePageParser.handleFromUrl("https://dspace.kpfu.ru/xmlui/handle/net/"));
+        assertThrows(IllegalArgumentException.class, () -> DspacePageParser.handleFromUrl("https://dspace.kpfu.ru/xmlui/handle/"));
+        assertThrows(IllegalArgumentException.class, () -> DspacePageParser.handleFromUrl("https://dspace.kpfu.ru/"));
+        assertThrows(IllegalArgumentException.class, () -> DspacePageParser.handleFromUrl(""));
+        assertThrows(IllegalArgumentException.class, () -> DspacePageParser.handleFromUrl("https://dspace.kpfu.ru/xmlui/handle/net/1 2"));
+    }
+
+    /**
+     * Parses the page with both parsers and checks that they return the same metadata.
+     */
+    private static DspaceMetadata parseBothWays(String html) throws IOException {
+        var fromDocument = DspacePageParser.parse(Jsoup.parse(html, ITEM_URL), ITEM_URL);
+        DspaceMetadata fromStream;
+        try (var parser = new StreamParser(Parser.htmlParser()).parse(new StringReader(html), ITEM_URL)) {
+            fromStream = DspacePageParser.parse(parser, ITEM_URL);
+        }
+        assertEquals(fromDocument, fromStream);
+        return fromStream;
+    }
+
+    private static String fixture() throws IOException {
+        try (var in = DspacePageParserTest.class.getResourceAsStream("/fixtures/dspace-item-full.html")) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package ru.kamila.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OaiHarvesterTest {
+    private static final String ITEM_URL_PREFIX = "https://dspace.kpfu.ru/xmlui/handle/";
+    private static final String SECONDS_GRANULARITY = "YYYY-MM-DDThh:mm:ssZ";
+
+    private OaiStub stub;
+    private OaiHarvester harvester;
+
+    @BeforeEach
+    void start() throws IOException {
+        stub = new OaiStub();
+        harvester = new OaiHarvester();
+        harvester.gateway = new StubGateway();
+        harvester.endpoint = stub.endpoint();
+        harvester.metadataPrefix = "oai_dc";
+        harvester.set = Optional.empty();
+        harvester.itemUrlPrefix = ITEM_URL_PREFIX;
+        harvester.maxAttempts = 3;
+        harvester.retryBackoff = Duration.ofMillis(10);
+        harvester.maxRetryAfter = Duration.ofSeconds(5);
+    }
+
+    @AfterEach
+    void stop() {
+        stub.close();
+    }
+
+    @Test
+    void pagesThroughResumptionTokensAndSkipsDeletedRecords() throws IOException {
+        var latest = new AtomicReference<String>();
+        var items = new ArrayList<String>();
+
+        harvester.listRecords(null, latest, items::add);
+
+        assertEquals(List.of(ITEM_URL_PREFIX + "net/1", ITEM_URL_PREFIX + "net/3"), items);
+        // The deleted record is the latest change and still moves the watermark.
+        assertEquals("2024-03-02T08:00:00Z", latest.get());
+        var listRequests = stub.requests("ListRecords");
+        assertEquals(2, listRequests.size());
+        assertEquals(Map.of("verb", "ListRecords", "metadataPrefix", "oai_dc"), listRequests.get(0));
+        assertEquals(Map.of("verb", "ListRecords", "resumptionToken", "page-2"), listRequests.get(1));
+    }
+
+    @Test
+    void incrementalHarvestListsFromTheWatermark() throws IOException {
+        harvester.listRecords("2024-03-01T00:00:00Z", new AtomicReference<>(), item -> {
+        });
+
+        assertEquals("2024-03-01T00:00:00Z", stub.requests("ListRecords").get(0).get("from"));
+    }
+
+    @Test
+    void watermarkIsCutToDayGranularity() throws IOException {
+        stub.granularity = "YYYY-MM-DD";
+
+        harvester.listRecords("2024-03-01T12:30:00Z", new AtomicReference<>(), item -> {
+        });
+
+        assertEquals("2024-03-01", stub.requests("ListRecords").get(0).get("from"));
+    }
+
+    @Test
+    void noRecordsMatchEndsTheListing() throws IOException {
+        var latest = new AtomicReference<String>();
+        var items = new ArrayList<String>();
+
+        harvester.listRecords(OaiStub.NOTHING_NEWER, latest, items::add);
+
+        assertTrue(items.isEmpty());
+        assertNull(latest.get());
+        assertEquals(1, stub.requests("ListRecords").size());
+    }
+
+    @Test
+    void serviceUnavailableIsRetriedAfterRetryAfter() throws IOException {
+        stub.unavailableResponses.set(1);
+        var items = new ArrayList<String>();
+        var started = System.nanoTime();
+
+        harvester.listRecords(null, new AtomicReference<>(), items::add);
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).compareTo(Duration.ofSeconds(1)) >= 0,
+                "the retry did not wait for Retry-After");
+        assertEquals(List.of(ITEM_URL_PREFIX + "net/1", ITEM_URL_PREFIX + "net/3"), items);
+        assertEquals(3, stub.requests("ListRecords").size());
+    }
+
+    @Test
+    void listingFailsWhenTheRepositoryStaysUnavailable() {
+        stub.unavailableResponses.set(harvester.maxAttempts);
+        var items = new ArrayList<String>();
+
+        assertThrows(IOException.class, () -> harvester.listRecords(null, new AtomicReference<>(), items::add));
+        // The first page was handed over before the second one failed.
+        assertFalse(items.isEmpty());
+    }
+
+    /**
+     * Sends OAI-PMH requests the way the REST client behind {@link DspaceGateway#oai} does, including the mapping of
+     * HTTP errors to {@link WebApplicationException}s, without the fault-tolerance interceptors of a running
+     * application.
+     */
+    private static final class StubGateway extends DspaceGateway {
+        private final HttpClient client = HttpClient.newHttpClient();
+
+        @Override
+        public <T> T oai(String endpoint, String verb, String metadataPrefix, String set, String from,
+                         String resumptionToken, OaiReader<T> reader) throws IOException, XMLStreamException {
+            var query = new LinkedHashMap<String, String>();
+            query.put("verb", verb);
+            query.put("metadataPrefix", metadataPrefix);
+            query.put("set", set);
+            query.put("from", from);
+            query.put("resumptionToken", resumptionToken);
+            var uri = new StringBuilder(endpoint).append('?');
+            query.forEach((name, value) -> {
+                if (value != null) {
+                    uri.append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8)).append('&');
+                }
+            });
+            HttpResponse<InputStream> response;
+            try {
+                response = client.send(HttpRequest.newBuilder(URI.create(uri.toString())).build(),
+                        HttpResponse.BodyHandlers.ofInputStream());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            try (var in = response.body()) {
+                if (response.statusCode() == 503) {
+                    var retryAfter = response.headers().firstValue(HttpHeaders.RETRY_AFTER).orElse(null);
+                    throw new ServiceUnavailableException(Response.status(503).header(HttpHeaders.RETRY_AFTER, retryAfter).build());
+                }
+                if (response.statusCode() >= 400) {
+                    throw new WebApplicationException(response.statusCode());
+                }
+                return reader.read(in);
+            }
+        }
+    }
+
+    /**
+     * A repository of three records on two pages: {@code net/1}, the deleted {@code net/2}, and {@code net/3} after a
+     * resumption token. A {@code from} of {@link #NOTHING_NEWER} matches no records.
+     */
+    private static final class OaiStub implements AutoCloseable {
+        static final String NOTHING_NEWER = "2030-01-01T00:00:00Z";
+
+        private final HttpServer server;
+        private final List<Map<String, String>> requests = new CopyOnWriteArrayList<>();
+        final AtomicInteger unavailableResponses = new AtomicInteger();
+        volatile String granularity = SECONDS_GRANULARITY;
+
+        OaiStub() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/oai/request", this::handle);
+            server.start();
+        }
+
+        String endpoint() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/oai/request";
+        }
+
+        List<Map<String, String>> requests(String verb) {
+            return requests.stream().filter(request -> verb.equals(request.get("verb"))).toList();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                var query = query(exchange.getRequestURI().getRawQuery());
+                requests.add(query);
+                String body;
+                if ("Identify".equals(query.get("verb"))) {
+                    body = "<Identify><granularity>" + granularity + "</granularity></Identify>";
+                } else if (query.containsKey("resumptionToken")) {
+                    if (unavailableResponses.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                        exchange.getResponseHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+                        exchange.sendResponseHeaders(503, -1);
+                        return;
+                    }
+                    body = "<ListRecords>" + record("net/3", "2024-03-01T09:00:00Z", false)
+                            + "<resumptionToken completeListSize=\"3\" cursor=\"2\"/></ListRecords>";
+                } else if (NOTHING_NEWER.equals(query.get("from"))) {
+                    body = "<error code=\"noRecordsMatch\">No records match the request</error>";
+                } else {
+                    body = "<ListRecords>" + record("net/1", "2024-03-01T08:00:00Z", false)
+                            + record("net/2", "2024-03-02T08:00:00Z", true)
+                            + "<resumptionToken completeListSize=\"3\" cursor=\"0\">page-2</resumptionToken></ListRecords>";
+                }
+                var bytes = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                        + "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\">" + body + "</OAI-PMH>")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+                exchange.sendResponseHeaders(200, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            }
+        }
+
+        private static String record(String handle, String datestamp, boolean deleted) {
+            return "<record><header" + (deleted ? " status=\"deleted\"" : "") + ">"
+                    + "<identifier>oai:dspace.kpfu.ru:" + handle + "</identifier>"
+                    + "<datestamp>" + datestamp + "</datestamp>"
+                    + "<setSpec>com_net_1</setSpec></header>"
+                    + (deleted ? "" : "<metadata><oai_dc:dc xmlns:oai_dc=\"http://www.openarchives.org/OAI/2.0/oai_dc/\"/></metadata>")
+                    + "</record>";
+        }
+
+        private static Map<String, String> query(String rawQuery) {
+            var query = new LinkedHashMap<String, String>();
+            if (rawQuery != null) {
+                for (var parameter : rawQuery.split("&")) {
+                    var separator = parameter.indexOf('=');
+                    if (separator > 0) {
+                        query.put(parameter.substring(0, separator),
+                                URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+                    }
+                }
+            }
+            return query;
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+}
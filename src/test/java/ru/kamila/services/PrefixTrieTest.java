@@ -0,0 +1,136 @@
+package ru.kamila.services;
+
+import org.junit.jupiter.api.Test;
+import ru.kamila.models.Suggestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PrefixTrieTest {
+    // Words that share prefixes with each other, so that entries meet in the same nodes.
+    private static final List<String> VOCABULARY = List.of("граф", "графы", "графовые", "графика", "гр", "модель",
+            "модели", "мода", "сеть", "сети", "сетевой", "ab", "abc", "abd", "b", "ba", "bac");
+    private static final int CAPACITY = 3;
+
+    @Test
+    void wordsAreFoldedLikeTheFullTextAnalyzer() {
+        assertEquals(List.of("елкин", "cafe", "a"), Arrays.asList(PrefixTrie.words("Ёлкин, Café — a a")));
+    }
+
+    @Test
+    void everyQueryWordMustPrefixAWordOfTheSuggestion() {
+        var trie = new PrefixTrie(CAPACITY);
+        trie.put(title("1", "Графовые модели"));
+        trie.put(title("2", "Графика"));
+        trie.put(author("3", "Моделин Г. Г.", 5));
+
+        assertEquals(List.of("3", "1"), ids(trie.suggest("мод", 10)));
+        assertEquals(List.of("1"), ids(trie.suggest("граф мод", 10)));
+        assertEquals(List.of("1"), ids(trie.suggest("мод граф", 10)));
+        assertEquals(List.of(), ids(trie.suggest("графи мод", 10)));
+        assertEquals(List.of(), ids(trie.suggest("  ", 10)));
+    }
+
+    @Test
+    void matchesBruteForceAfterPutsReweighsAndReplacements() {
+        var random = new Random(7);
+        var trie = new PrefixTrie(CAPACITY);
+        var expected = new LinkedHashMap<String, Suggestion>();
+
+        for (int step = 0; step < 1000; step++) {
+            var id = String.valueOf(random.nextInt(40));
+            var kind = random.nextBoolean() ? Suggestion.Kind.TITLE : Suggestion.Kind.AUTHOR;
+            var previous = expected.get(kind + ":" + id);
+            Suggestion suggestion;
+            if (previous != null && random.nextInt(3) == 0) {
+                // Same words, new weight.
+                suggestion = new Suggestion(kind, id, previous.text(), random.nextInt(10));
+            } else {
+                // A new entry, or a replacement whose words change.
+                suggestion = new Suggestion(kind, id, randomText(random), random.nextInt(10));
+            }
+            trie.put(suggestion);
+            expected.put(kind + ":" + id, suggestion);
+
+            assertEquals(expected.size(), trie.size());
+            if (step % 100 == 0) {
+                assertAgrees(trie, expected, step);
+            }
+        }
+        assertAgrees(trie, expected, -1);
+    }
+
+    private static void assertAgrees(PrefixTrie trie, Map<String, Suggestion> expected, int step) {
+        for (var query : queries()) {
+            for (int limit = 1; limit <= CAPACITY; limit++) {
+                assertEquals(bruteForce(expected.values(), query, limit), trie.suggest(query, limit),
+                        "query '" + query + "' with limit " + limit + " after step " + step);
+            }
+        }
+    }
+
+    /**
+     * Every prefix of every vocabulary word, alone and paired with the prefixes of another word.
+     */
+    private static Set<String> queries() {
+        var prefixes = new LinkedHashSet<String>();
+        for (var word : VOCABULARY) {
+            for (int length = 1; length <= word.length(); length++) {
+                prefixes.add(word.substring(0, length));
+            }
+        }
+        var queries = new LinkedHashSet<>(prefixes);
+        for (var first : VOCABULARY) {
+            for (var second : prefixes) {
+                queries.add(first + " " + second);
+            }
+        }
+        queries.add("нет");
+        return queries;
+    }
+
+    private static List<Suggestion> bruteForce(Iterable<Suggestion> suggestions, String query, int limit) {
+        var prefixes = PrefixTrie.words(query);
+        var matches = new ArrayList<Suggestion>();
+        for (var suggestion : suggestions) {
+            var words = PrefixTrie.words(suggestion.text());
+            if (Arrays.stream(prefixes).allMatch(prefix -> Arrays.stream(words).anyMatch(word -> word.startsWith(prefix)))) {
+                matches.add(suggestion);
+            }
+        }
+        return matches.stream().sorted(PrefixTrie.RANK).limit(limit).toList();
+    }
+
+    private static String randomText(Random random) {
+        var words = new ArrayList<String>();
+        var count = 1 + random.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            words.add(VOCABULARY.get(random.nextInt(VOCABULARY.size())));
+        }
+        // Some texts repeat a word or differ only in case, which must not count twice.
+        if (random.nextInt(5) == 0) {
+            words.add(words.get(0).toUpperCase());
+        }
+        return String.join(" ", words);
+    }
+
+    private static Suggestion title(String id, String text) {
+        return new Suggestion(Suggestion.Kind.TITLE, id, text, 1);
+    }
+
+    private static Suggestion author(String id, String name, int works) {
+        return new Suggestion(Suggestion.Kind.AUTHOR, id, name, works);
+    }
+
+    private static List<String> ids(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::id).toList();
+    }
+}